@@ -0,0 +1,163 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the {@link ArgumentParser} on long lists of <code>/iam</code> and
+ * <code>/whois</code> arguments, against the regexes it replaced.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArgumentParserBenchmark {
+
+    /**
+     * An <code>Arguments</code> is a random mix of every kind of argument,
+     * unknown ones included.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @State(Scope.Benchmark)
+    public static class Arguments {
+
+        /** The shapes the arguments are drawn from. */
+        final public static String[] SHAPES = {
+            "#tag%d", "-#tag%d", "+#tag%d", "%dyo", "%dcm", "%dkg",
+            "%d,%dyo", ",%dkm", "%d,cm", "top%d", "😎", "%dxx", "%d%%"
+        };
+
+        /** The number of arguments. */
+        @Param({"10", "1000", "100000"})
+        public int size;
+
+        /** The arguments in question. */
+        public String[] arguments;
+
+        /**
+         * Generates the arguments.
+         *
+         * @author FoxySeta
+         * @version 1.0.0
+         * @since 1.0.0
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            final Random random = new Random(SyntheticChat.SEED);
+            arguments = new String[size];
+            for (int i = 0; i < size; ++i)
+                arguments[i] = String.format(
+                    SHAPES[random.nextInt(SHAPES.length)],
+                    random.nextInt(200), random.nextInt(200));
+        }
+
+    }
+
+    /**
+     * Parses every argument as <code>/iam</code> does.
+     *
+     * @param arguments The {@link Arguments} in use.
+     * @return The number of known arguments.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public int parseIam(Arguments arguments) {
+        final ArgumentParser parser = new ArgumentParser();
+        int res = 0;
+        for (String argument : arguments.arguments)
+            if (parser.parseIam(argument) != ArgumentParser.Kind.UNKNOWN)
+                ++res;
+        return res;
+    }
+
+    /**
+     * Parses every argument through the regexes <code>/iam</code> used to
+     * rely on.
+     *
+     * @param arguments The {@link Arguments} in use.
+     * @return The number of known arguments.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public int regexIam(Arguments arguments) {
+        int res = 0;
+        for (String argument : arguments.arguments)
+            if (TAGPATTERN.matcher(argument).matches()
+                || STATPATTERN.matcher(argument).matches()
+                || Profile.EMOJIPATTERN.matcher(argument).matches())
+                ++res;
+        return res;
+    }
+
+    /**
+     * Parses every argument as <code>/whois</code> does.
+     *
+     * @param arguments The {@link Arguments} in use.
+     * @return The {@link Filter} in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public Filter parseWhois(Arguments arguments) {
+        return new Filter(arguments.arguments, null);
+    }
+
+    /**
+     * Parses every argument through the regexes <code>/whois</code> used to
+     * rely on, including the linear search for the {@link Stat}.
+     *
+     * @param arguments The {@link Arguments} in use.
+     * @return The number of known arguments.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public int regexWhois(Arguments arguments) {
+        int res = 0;
+        for (String argument : arguments.arguments) {
+            if (Filter.LIMITARGUMENTPATTERN.matcher(argument).matches()) {
+                ++res;
+                continue;
+            }
+            final Matcher matcher =
+                Filter.RANGEARGUMENTPATTERN.matcher(argument);
+            if (matcher.matches()) {
+                for (Stat stat : Stat.values())
+                    if (stat.uom().equals(matcher.group(4)))
+                        ++res;
+            } else if (Filter.TAGARGUMENTPATTERN.matcher(argument).matches())
+                ++res;
+        }
+        return res;
+    }
+
+    /** The regex <code>/iam</code> used for tags. */
+    final private static Pattern TAGPATTERN =
+        Pattern.compile("([+-]?)#([0-9A-Za-z]+).*");
+    /** The regex <code>/iam</code> used for stats. */
+    final private static Pattern STATPATTERN = Pattern.compile("(\\d+)(\\w+)");
+
+}
@@ -0,0 +1,97 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Measures the parsing of a {@link Filter} and its evaluation against every
+ * {@link Profile} of a {@link SyntheticChat}.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterBenchmark {
+
+    /**
+     * Parses the arguments of a typical <code>/whois</code> query.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @return The {@link Filter} in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public Filter parse(SyntheticChat chat) {
+        return new Filter(SyntheticChat.ARGUMENTS, chat.from);
+    }
+
+    /**
+     * Tests every {@link Profile} one by one.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @return The number of matches.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public int test(SyntheticChat chat) {
+        int res = 0;
+        for (Profile p : chat.profiles)
+            if (chat.filter.test(p))
+                ++res;
+        return res;
+    }
+
+    /**
+     * Computes the distance of every located {@link Profile} through the
+     * full haversine formula.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @return The sum of the distances.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public double distance(SyntheticChat chat) {
+        final double lat = chat.from.getLatitude(),
+                     lon = chat.from.getLongitude();
+        double res = 0;
+        for (Profile p : chat.profiles)
+            if (p.location != null)
+                res += Filter.distance(lat, lon, p.location.getLatitude(),
+                                       p.location.getLongitude());
+        return res;
+    }
+
+    /**
+     * Checks the distance range of the {@link Filter} against every located
+     * {@link Profile}.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @return The number of profiles within range.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public int withinDistance(SyntheticChat chat) {
+        int res = 0;
+        for (Profile p : chat.profiles)
+            if (p.location != null
+                && chat.filter.withinDistance(p.location.getLatitude(),
+                                              p.location.getLongitude()))
+                ++res;
+        return res;
+    }
+
+}
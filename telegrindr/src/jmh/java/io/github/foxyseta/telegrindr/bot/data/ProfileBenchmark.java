@@ -0,0 +1,87 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the rendering and the encoding of every {@link Profile} of a
+ * {@link SyntheticChat}.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProfileBenchmark {
+
+    /**
+     * Renders every {@link Profile} as sent by <code>/iam</code> and
+     * <code>/howis</code>.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @param blackhole Consumes the results.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public void render(SyntheticChat chat, Blackhole blackhole) {
+        for (Profile p : chat.profiles)
+            blackhole.consume(p.toString());
+    }
+
+    /**
+     * Renders every {@link Profile} as listed by <code>/whois</code>.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @param blackhole Consumes the results.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public void renderShort(SyntheticChat chat, Blackhole blackhole) {
+        for (Profile p : chat.profiles)
+            blackhole.consume(p.toShortString());
+    }
+
+    /**
+     * Encodes every {@link Profile} through the {@link ProfileCodec}.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @param blackhole Consumes the results.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public void encode(SyntheticChat chat, Blackhole blackhole) {
+        for (Profile p : chat.profiles)
+            blackhole.consume(ProfileCodec.encode(p));
+    }
+
+    /**
+     * Decodes every {@link Profile} through the {@link ProfileCodec}.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @param blackhole Consumes the results.
+     * @throws IOException A record is corrupted.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public void decode(SyntheticChat chat, Blackhole blackhole)
+        throws IOException {
+        for (byte[] record : chat.records)
+            blackhole.consume(ProfileCodec.decode(record));
+    }
+
+}
@@ -0,0 +1,169 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.telegram.telegrambots.meta.api.objects.Location;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import io.github.foxyseta.telegrindr.bot.MapDBProfileStore;
+import io.github.foxyseta.telegrindr.bot.ProfileSerializer;
+
+/**
+ * A <code>SyntheticChat</code> is a randomly generated chat shared by every
+ * benchmark. Its {@linkplain Profile profiles} have random stats, tags and
+ * locations scattered around the {@link #from caller}. The same seed always
+ * generates the same chat, so that results can be compared between releases.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+public class SyntheticChat {
+
+    /** The seed of the random generator. */
+    final public static long SEED = 42;
+    /** The pool the tags of each {@link Profile} are drawn from. */
+    final public static String[] TAGS = {
+        "single", "taken", "nerd", "jock", "bear", "otter", "twink", "cub",
+        "sporty", "gamer", "artist", "foodie", "traveler", "reader", "dancer",
+        "hiker", "biker", "musician", "student", "worker"
+    };
+    /** The arguments of the typical <code>/whois</code> query. */
+    final public static String[] ARGUMENTS = {
+        "18,40yo", ",25km", "#nerd", "-#jock"
+    };
+    /** The name of the {@link Profile} table used by MapDB benchmarks. */
+    final public static String PROFILESTABLE =
+        String.format(MapDBProfileStore.PROFILESTABLE, 1);
+
+    /** The number of profiles in the chat. */
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /** Every {@link Profile} in the chat. */
+    public Profile[] profiles;
+    /** The location of the user running the queries. */
+    public Location from;
+    /** The {@link Filter} built from {@link #ARGUMENTS}. */
+    public Filter filter;
+    /** The columnar view of {@link #profiles}. */
+    public ChatSnapshot snapshot;
+    /** The encoded form of each {@link Profile}. */
+    public byte[][] records;
+    /** The database holding {@link #profiles}. */
+    public DB db;
+    /** The {@link #PROFILESTABLE} in {@link #db}. */
+    public Map<Integer, Profile> table;
+
+    /**
+     * Generates the chat and stores it in a fresh database.
+     *
+     * @throws IOException A temporary file could not be created.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Random random = new Random(SEED);
+        from = location(44.4949, 11.3426);
+        profiles = new Profile[size];
+        final ChatStatistics statistics = new ChatStatistics();
+        snapshot = new ChatSnapshot(statistics);
+        records = new byte[size][];
+        for (int i = 0; i < size; ++i) {
+            profiles[i] = profile(random, i + 1);
+            statistics.update(null, profiles[i]);
+            snapshot.update(profiles[i]);
+            records[i] = ProfileCodec.encode(profiles[i]);
+        }
+        filter = new Filter(ARGUMENTS, from);
+        dbFile = File.createTempFile("telegrindr-jmh-", ".db");
+        dbFile.delete();
+        db = DBMaker.fileDB(dbFile).fileMmapEnableIfSupported()
+                    .transactionEnable().make();
+        table = db.hashMap(PROFILESTABLE, Serializer.INTEGER,
+                           ProfileSerializer.INSTANCE).createOrOpen();
+        for (Profile p : profiles)
+            table.put(p.user.getId(), p);
+        db.commit();
+    }
+
+    /**
+     * Closes and deletes the database.
+     *
+     * @throws IOException The database could not be closed.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        db.close();
+        dbFile.delete();
+    }
+
+    /** The file backing {@link #db}. */
+    private File dbFile;
+
+    /**
+     * Generates a random {@link Profile}.
+     *
+     * @param random The random generator.
+     * @param id The user identifier.
+     * @return The {@link Profile} in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static Profile profile(Random random, int id) {
+        final User user = new User();
+        user.setId(id);
+        user.setFirstName("User" + id);
+        user.setUserName("user" + id);
+        user.setLanguageCode("en");
+        final Profile res = new Profile(user);
+        for (Stat stat : Stat.values())
+            if (random.nextInt(4) != 0)
+                res.putStat(stat, stat.min()
+                                  + random.nextInt(stat.max() - stat.min() + 1));
+        for (int i = random.nextInt(5); i > 0; --i)
+            res.addTag(TAGS[random.nextInt(TAGS.length)]);
+        // most users are within a few dozen kilometers
+        if (random.nextInt(5) != 0)
+            res.location = location(44.4949 + random.nextGaussian() * 0.5,
+                                    11.3426 + random.nextGaussian() * 0.5);
+        return res;
+    }
+
+    /**
+     * Builds a {@link Location}.
+     *
+     * @param lat The latitude.
+     * @param lon The longitude.
+     * @return The {@link Location} in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static Location location(double lat, double lon) {
+        final Location res = new Location();
+        res.setLatitude(lat);
+        res.setLongitude(lon);
+        return res;
+    }
+
+}
@@ -0,0 +1,94 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the steps of a <code>/whois</code> query on a {@link
+ * SyntheticChat}: the evaluation against the {@link ChatSnapshot}, the reads
+ * from MapDB and the rendering of the first page.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WhoisBenchmark {
+
+    /** The number of profiles on each page. */
+    final public static int PAGESIZE = 50;
+
+    /**
+     * Selects every matching user.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @return The identifiers of the matching users.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public int[] select(SyntheticChat chat) {
+        return chat.snapshot.select(chat.filter);
+    }
+
+    /**
+     * Reads the first page of matching users, reads their profiles from MapDB
+     * and renders them, just like <code>/whois</code> does.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @return The text of the first page.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public String firstPage(SyntheticChat chat) {
+        final int[] page = chat.snapshot.page(new Cursor(chat.filter),
+                                              PAGESIZE, null);
+        return IntStream.of(page).mapToObj(chat.table::get)
+                        .filter(Objects::nonNull).map(Profile::toShortString)
+                        .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Reads every {@link Profile} from MapDB by key.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @param blackhole Consumes the results.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public void mapdbGet(SyntheticChat chat, Blackhole blackhole) {
+        for (Profile p : chat.profiles)
+            blackhole.consume(chat.table.get(p.user.getId()));
+    }
+
+    /**
+     * Reads every {@link Profile} from MapDB by iterating over the table, as
+     * done when a {@link ChatSnapshot} is built.
+     *
+     * @param chat The {@link SyntheticChat} in use.
+     * @param blackhole Consumes the results.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Benchmark
+    public void mapdbScan(SyntheticChat chat, Blackhole blackhole) {
+        for (Profile p : chat.table.values())
+            blackhole.consume(p);
+    }
+
+}
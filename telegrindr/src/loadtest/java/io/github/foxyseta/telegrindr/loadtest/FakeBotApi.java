@@ -0,0 +1,234 @@
+package io.github.foxyseta.telegrindr.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A <code>FakeBotApi</code> is a local stand-in for the Telegram Bot API. It
+ * implements the methods used by a polling bot and by its senders: pending
+ * updates are handed out through <code>getUpdates</code>, while outgoing
+ * messages are acknowledged and reported to a listener instead of being
+ * delivered. Any other method just succeeds.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class FakeBotApi {
+
+    /** The path prefix of every method, followed by the bot token. */
+    final public static String PATHPREFIX = "/bot";
+
+    /**
+     * Starts a new {@link FakeBotApi} on the loopback interface.
+     *
+     * @param port     The port to listen on, or <code>0</code> for any free
+     *                 one.
+     * @param listener Receives the chat identifier of every outgoing message.
+     * @throws IOException The server could not be started.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public FakeBotApi(int port, LongConsumer listener) throws IOException {
+        this.listener = listener;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PATHPREFIX, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Gets the base URL to be passed to {@link
+     * org.telegram.telegrambots.bots.DefaultBotOptions#setBaseUrl}.
+     *
+     * @return The base URL in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + PATHPREFIX;
+    }
+
+    /**
+     * Queues an update for the bot.
+     *
+     * @param update The JSON representation of the update, without its
+     *               <code>update_id</code>.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void push(String update) {
+        synchronized (updates) {
+            final long id = ++lastUpdateId;
+            updates.addLast(new Pending(id, "{\"update_id\":" + id + "," + update.substring(1)));
+            updates.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the server.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void stop() {
+        synchronized (updates) {
+            stopped = true;
+            updates.notifyAll();
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * A <code>Pending</code> update has not been confirmed by the bot yet.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static class Pending {
+
+        /**
+         * Instantiates a new {@link Pending} update.
+         *
+         * @param id   See {@link #id}.
+         * @param json See {@link #json}.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        Pending(long id, String json) {
+            this.id = id;
+            this.json = json;
+        }
+
+        /** The identifier of the update. */
+        final private long id;
+        /** The JSON representation of the update. */
+        final private String json;
+
+    }
+
+    /** The maximum number of updates returned by a single poll. */
+    final private static int MAXUPDATES = 100;
+
+    /** Receives the chat identifier of every outgoing message. */
+    final private LongConsumer listener;
+    /** Serves every request, including long polls. */
+    final private ExecutorService executor = Executors.newCachedThreadPool();
+    /** The underlying HTTP server. */
+    final private HttpServer server;
+    /** Parses the requests. */
+    final private ObjectMapper mapper = new ObjectMapper();
+    /** The updates not confirmed yet, oldest first. */
+    final private Deque<Pending> updates = new ArrayDeque<Pending>();
+    /** The identifiers of the outgoing messages. */
+    final private AtomicLong lastMessageId = new AtomicLong();
+    /** The identifier of the latest update. */
+    private long lastUpdateId;
+    /** Whether {@link #stop} has been called. */
+    private boolean stopped;
+
+    /**
+     * Handles a single method call.
+     *
+     * @param exchange The HTTP exchange.
+     * @throws IOException The exchange failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            final String path = exchange.getRequestURI().getPath();
+            final String method = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+            final byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            final JsonNode request = body.length == 0 ? null : mapper.readTree(body);
+            final String result;
+            switch (method) {
+            case "getupdates":
+                result = getUpdates(request);
+                break;
+            case "getme":
+                result = "{\"id\":1,\"is_bot\":true,\"first_name\":\"TeleGrindr\",\"username\":\"telegrindrBot\"}";
+                break;
+            case "sendmessage":
+            case "sendlocation":
+            case "editmessagetext":
+                final long chatId = request.path("chat_id").asLong();
+                listener.accept(chatId);
+                result = "{\"message_id\":" + lastMessageId.incrementAndGet() + ",\"date\":"
+                        + System.currentTimeMillis() / 1000 + ",\"chat\":{\"id\":" + chatId + ",\"type\":\"group\"}}";
+                break;
+            default:
+                result = "true";
+            }
+            final byte[] response = ("{\"ok\":true,\"result\":" + result + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Confirms the updates preceding the requested offset, then waits for the
+     * following ones.
+     *
+     * @param request The parameters of the call.
+     * @return The JSON array of the updates.
+     * @throws InterruptedException The server is stopping.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private String getUpdates(JsonNode request) throws InterruptedException {
+        final long offset = request == null ? 0 : request.path("offset").asLong();
+        final long timeout = request == null ? 0 : request.path("timeout").asLong();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        final StringBuilder res = new StringBuilder("[");
+        synchronized (updates) {
+            while (!updates.isEmpty() && updates.peekFirst().id < offset)
+                updates.removeFirst();
+            for (long left = deadline - System.nanoTime(); updates.isEmpty() && !stopped && left > 0;
+                    left = deadline - System.nanoTime())
+                TimeUnit.NANOSECONDS.timedWait(updates, left);
+            final Iterator<Pending> i = updates.iterator();
+            for (int n = 0; i.hasNext() && n < MAXUPDATES; ++n)
+                res.append(n == 0 ? "" : ",").append(i.next().json);
+        }
+        return res.append(']').toString();
+    }
+
+}
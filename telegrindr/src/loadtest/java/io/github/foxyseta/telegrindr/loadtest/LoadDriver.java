@@ -0,0 +1,486 @@
+package io.github.foxyseta.telegrindr.loadtest;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.generics.BotSession;
+import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+
+import io.github.foxyseta.telegrindr.App;
+import io.github.foxyseta.telegrindr.bot.Settings;
+import io.github.foxyseta.telegrindr.bot.TeleGrindr;
+
+/**
+ * A <code>LoadDriver</code> runs a {@link TeleGrindr} against a {@link
+ * FakeBotApi} and replays synthetic <code>/iam</code>, <code>/whois</code>,
+ * <code>/howis</code> and location updates at a fixed rate across many chats.
+ * Each chat has at most one update in flight, which is complete once the bot
+ * has sent every expected message. Latencies are measured from the time each
+ * update was meant to be sent, so that a saturated bot is not hidden by a
+ * slower driver. The bot reads its {@linkplain App#settings settings} from the
+ * system properties as usual, except that its outbox is not rate limited
+ * unless <code>telegrindr.outboxRate</code> or <code>telegrindr.outboxChatRate
+ * </code> are set, since the {@link FakeBotApi} never throttles. The load is
+ * shaped by the following properties:
+ * <ul>
+ * <li><code>loadtest.chats</code> (default 100)</li>
+ * <li><code>loadtest.usersPerChat</code> (default 50)</li>
+ * <li><code>loadtest.rate</code>, in updates per second (default 1000)</li>
+ * <li><code>loadtest.duration</code>, in seconds (default 30)</li>
+ * <li><code>loadtest.timeout</code>, in seconds (default 10)</li>
+ * </ul>
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class LoadDriver {
+
+    /** The prefix shared by every system property read by the driver. */
+    final public static String PROPERTYPREFIX = "loadtest.";
+
+    /**
+     * The entry point of the load test.
+     *
+     * @param args Ignored.
+     * @throws Exception The bot or the server could not be started.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public static void main(String[] args) throws Exception {
+        final LoadDriver driver = new LoadDriver(Integer.getInteger(PROPERTYPREFIX + "chats", 100),
+                Integer.getInteger(PROPERTYPREFIX + "usersPerChat", 50),
+                Integer.getInteger(PROPERTYPREFIX + "rate", 1000),
+                Integer.getInteger(PROPERTYPREFIX + "timeout", 10));
+        driver.run(Integer.getInteger(PROPERTYPREFIX + "duration", 30));
+        System.exit(0);
+    }
+
+    /**
+     * Instantiates a new {@link LoadDriver}.
+     *
+     * @param chats        The number of chats.
+     * @param usersPerChat The number of users in each chat.
+     * @param rate         The number of updates per second.
+     * @param timeout      The number of seconds after which an update is
+     *                     given up on.
+     * @throws IllegalArgumentException A parameter is not positive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public LoadDriver(int chats, int usersPerChat, int rate, int timeout) {
+        if (chats <= 0 || usersPerChat <= 0 || rate <= 0 || timeout <= 0)
+            throw new IllegalArgumentException("LoadDriver.LoadDriver: every parameter should be positive");
+        this.chats = chats;
+        this.usersPerChat = usersPerChat;
+        this.rate = rate;
+        this.timeout = TimeUnit.SECONDS.toNanos(timeout);
+        started = new long[chats];
+        expected = new int[chats];
+        kinds = new Kind[chats];
+    }
+
+    /**
+     * Starts the bot, gives every user a location, then applies the load and
+     * prints a report.
+     *
+     * @param duration The number of seconds the load is applied for.
+     * @throws Exception The bot or the server could not be started.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void run(int duration) throws Exception {
+        final FakeBotApi api = new FakeBotApi(0, this::onMessage);
+        final DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(api.getBaseUrl());
+        final String username = "loadtest" + System.currentTimeMillis() + "Bot";
+        final TeleGrindr bot = new TeleGrindr("0:loadtest", username, 1, settings(), options);
+        final BotSession session = new TelegramBotsApi(DefaultBotSession.class).registerBot(bot);
+        final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor();
+        sweeper.scheduleAtFixedRate(this::sweep, 1, 1, TimeUnit.SECONDS);
+        try {
+            for (int i = 0; i < chats; ++i)
+                idle.add(i);
+            warmUp(api);
+            apply(api, TimeUnit.SECONDS.toNanos(duration));
+        } finally {
+            sweeper.shutdownNow();
+            session.stop();
+            bot.onClosing();
+            api.stop();
+            for (File file : new File(".").listFiles())
+                if (file.getName().startsWith(username))
+                    file.delete();
+        }
+    }
+
+    /**
+     * A <code>Kind</code> of update, along with the number of messages the bot
+     * answers it with.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private enum Kind {
+
+        /** A location, answered by the updated profile and its location. */
+        LOCATION(2, 10),
+        /** An <code>/iam</code> command, answered like {@link #LOCATION}. */
+        IAM(2, 20),
+        /** A <code>/howis</code> command, answered like {@link #LOCATION}. */
+        HOWIS(2, 20),
+        /** A <code>/whois</code> command, answered by a list. */
+        WHOIS(1, 50);
+
+        /**
+         * Instantiates a new {@link Kind}.
+         *
+         * @param replies See {@link #replies}.
+         * @param weight  See {@link #weight}.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        Kind(int replies, int weight) {
+            this.replies = replies;
+            this.weight = weight;
+        }
+
+        /** The number of messages the bot answers with. */
+        final private int replies;
+        /** The percentage of updates of this kind. */
+        final private int weight;
+        /** The latencies of the completed updates of this kind. */
+        final private Latencies latencies = new Latencies();
+
+    }
+
+    /**
+     * A <code>Latencies</code> object collects latencies in nanoseconds.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static class Latencies {
+
+        /**
+         * Adds a latency.
+         *
+         * @param latency The latency in nanoseconds.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        synchronized void add(long latency) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = latency;
+        }
+
+        /**
+         * Gets the latencies collected so far, sorted.
+         *
+         * @return The latencies in question.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        synchronized long[] sorted() {
+            final long[] res = Arrays.copyOf(values, size);
+            Arrays.sort(res);
+            return res;
+        }
+
+        /** The latencies collected so far. */
+        private long[] values = new long[1024];
+        /** The number of latencies collected so far. */
+        private int size;
+
+    }
+
+    /** The percentiles printed in the report. */
+    final private static double[] PERCENTILES = { 50, 90, 99, 99.9 };
+    /** The number of nanoseconds in a millisecond. */
+    final private static double NANOSPERMILLI = 1e6;
+
+    /** The number of chats. */
+    final private int chats;
+    /** The number of users in each chat. */
+    final private int usersPerChat;
+    /** The number of updates per second. */
+    final private int rate;
+    /** The number of nanoseconds after which an update is given up on. */
+    final private long timeout;
+    /** The time each chat's update was meant to be sent at. */
+    final private long[] started;
+    /** The number of messages each chat is still waiting for. */
+    final private int[] expected;
+    /** The kind of each chat's update. */
+    final private Kind[] kinds;
+    /** The chats without any update in flight. */
+    final private BlockingQueue<Integer> idle = new LinkedBlockingQueue<Integer>();
+    /** The number of updates given up on. */
+    final private AtomicLong timeouts = new AtomicLong();
+    /** The generator of the synthetic updates. */
+    final private Random random = new Random(42);
+    /** Whether latencies are being recorded. */
+    private volatile boolean measuring;
+    /** The identifiers of the synthetic messages. */
+    private long lastMessageId;
+
+    /**
+     * Reads the {@link Settings} of the bot, lifting the rate limits of its
+     * outbox unless they are set explicitly: otherwise the default limits,
+     * meant for the real Bot API, would be measured instead of the bot.
+     *
+     * @return The {@link Settings} in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static Settings settings() {
+        final Settings settings = App.settings();
+        if (System.getProperty(App.PROPERTYPREFIX + "outboxRate") == null)
+            settings.setOutboxRate(Integer.MAX_VALUE);
+        if (System.getProperty(App.PROPERTYPREFIX + "outboxChatRate") == null)
+            settings.setOutboxChatRate(Integer.MAX_VALUE);
+        return settings;
+    }
+
+    /**
+     * Sends every user's location once, so that every later update gets the
+     * same number of messages in reply.
+     *
+     * @param api The {@link FakeBotApi} in use.
+     * @throws InterruptedException The driver was interrupted.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void warmUp(FakeBotApi api) throws InterruptedException {
+        final int[] sent = new int[chats];
+        for (int done = 0; done < chats;) {
+            final int chat = idle.take();
+            if (sent[chat] < usersPerChat)
+                send(api, chat, Kind.LOCATION, sent[chat]++, System.nanoTime());
+            else
+                ++done;
+        }
+        for (int chat = 0; chat < chats; ++chat)
+            idle.add(chat);
+        System.out.printf("warm-up done: %d chats, %d users each%n", chats, usersPerChat);
+    }
+
+    /**
+     * Sends updates at the configured rate, then prints a report.
+     *
+     * @param api      The {@link FakeBotApi} in use.
+     * @param duration The number of nanoseconds the load is applied for.
+     * @throws InterruptedException The driver was interrupted.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void apply(FakeBotApi api, long duration) throws InterruptedException {
+        measuring = true;
+        final long interval = TimeUnit.SECONDS.toNanos(1) / rate, begin = System.nanoTime(),
+                end = begin + duration;
+        long next = begin, sent = 0;
+        while (next < end) {
+            final int chat = idle.take();
+            for (long now = System.nanoTime(); now < next; now = System.nanoTime())
+                LockSupport.parkNanos(next - now);
+            send(api, chat, kind(), random.nextInt(usersPerChat), next);
+            ++sent;
+            next += interval;
+        }
+        final long elapsed = System.nanoTime() - begin;
+        // let the updates in flight complete
+        for (long deadline = System.nanoTime() + timeout; idle.size() < chats && System.nanoTime() < deadline;)
+            TimeUnit.MILLISECONDS.sleep(10);
+        measuring = false;
+        report(sent, elapsed);
+    }
+
+    /**
+     * Draws the kind of the next update.
+     *
+     * @return The {@link Kind} in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Kind kind() {
+        int draw = random.nextInt(100);
+        for (Kind kind : Kind.values())
+            if ((draw -= kind.weight) < 0)
+                return kind;
+        return Kind.WHOIS;
+    }
+
+    /**
+     * Sends a synthetic update from a user of a chat.
+     *
+     * @param api      The {@link FakeBotApi} in use.
+     * @param chat     The index of the chat.
+     * @param kind     The {@link Kind} of the update.
+     * @param user     The index of the user within the chat.
+     * @param intended The time the update was meant to be sent at.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void send(FakeBotApi api, int chat, Kind kind, int user, long intended) {
+        synchronized (kinds) {
+            started[chat] = intended;
+            expected[chat] = kind.replies;
+            kinds[chat] = kind;
+        }
+        final long userId = (long) chat * usersPerChat + user + 1;
+        final String from = String.format(Locale.ROOT,
+                "{\"id\":%d,\"is_bot\":false,\"first_name\":\"User %d\",\"username\":\"user%d\",\"language_code\":\"en\"}",
+                userId, userId, userId);
+        final String content;
+        switch (kind) {
+        case LOCATION:
+            content = String.format(Locale.ROOT, "\"location\":{\"latitude\":%f,\"longitude\":%f}",
+                    44.4949 + random.nextGaussian() * 0.2, 11.3426 + random.nextGaussian() * 0.2);
+            break;
+        case IAM:
+            content = command("/iam " + (18 + random.nextInt(40)) + "yo " + (150 + random.nextInt(50)) + "cm #t"
+                    + random.nextInt(10));
+            break;
+        case HOWIS:
+            content = command("/howis @user" + ((long) chat * usersPerChat + random.nextInt(usersPerChat) + 1));
+            break;
+        default:
+            content = command("/whois " + (18 + random.nextInt(10)) + ",40yo ," + (5 + random.nextInt(50)) + "km");
+        }
+        api.push(String.format(Locale.ROOT,
+                "{\"message\":{\"message_id\":%d,\"from\":%s,\"chat\":{\"id\":%d,\"type\":\"group\",\"title\":\"Load %d\"},\"date\":%d,%s}}",
+                ++lastMessageId, from, -(chat + 1L), chat, System.currentTimeMillis() / 1000, content));
+    }
+
+    /**
+     * Builds the fields of a message containing a command.
+     *
+     * @param text The text of the message, starting with the command.
+     * @return The JSON fields in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static String command(String text) {
+        final int length = text.indexOf(' ') < 0 ? text.length() : text.indexOf(' ');
+        return String.format(Locale.ROOT,
+                "\"text\":\"%s\",\"entities\":[{\"type\":\"bot_command\",\"offset\":0,\"length\":%d}]", text,
+                length);
+    }
+
+    /**
+     * Receives a message sent by the bot.
+     *
+     * @param chatId The chat the message was sent to.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void onMessage(long chatId) {
+        final int chat = (int) (-chatId - 1);
+        if (chat < 0 || chat >= chats)
+            return;
+        final long now = System.nanoTime();
+        synchronized (kinds) {
+            if (expected[chat] == 0 || --expected[chat] > 0)
+                return;
+            if (measuring)
+                kinds[chat].latencies.add(now - started[chat]);
+        }
+        idle.add(chat);
+    }
+
+    /**
+     * Gives up on the updates which have been in flight for too long.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void sweep() {
+        final long now = System.nanoTime();
+        for (int chat = 0; chat < chats; ++chat) {
+            synchronized (kinds) {
+                if (expected[chat] == 0 || now - started[chat] <= timeout)
+                    continue;
+                expected[chat] = 0;
+            }
+            if (measuring)
+                timeouts.incrementAndGet();
+            idle.add(chat);
+        }
+    }
+
+    /**
+     * Prints the throughput and the latency percentiles of each {@link Kind}
+     * of update.
+     *
+     * @param sent    The number of updates sent.
+     * @param elapsed The number of nanoseconds the load was applied for.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void report(long sent, long elapsed) {
+        final double seconds = elapsed / 1e9;
+        long completed = 0;
+        System.out.printf("%-9s %9s", "kind", "count");
+        for (double p : PERCENTILES)
+            System.out.printf(" %9s", "p" + p);
+        System.out.printf(" %9s%n", "max");
+        for (Kind kind : Kind.values()) {
+            final long[] latencies = kind.latencies.sorted();
+            completed += latencies.length;
+            System.out.printf("%-9s %9d", kind, latencies.length);
+            for (double p : PERCENTILES)
+                System.out.printf(" %9.2f", percentile(latencies, p) / NANOSPERMILLI);
+            System.out.printf(" %9.2f%n",
+                    latencies.length == 0 ? 0 : latencies[latencies.length - 1] / NANOSPERMILLI);
+        }
+        System.out.printf("latencies in ms; offered %.1f updates/s, completed %.1f updates/s, %d timeouts%n",
+                sent / seconds, completed / seconds, timeouts.get());
+    }
+
+    /**
+     * Gets a percentile of some sorted values.
+     *
+     * @param sorted The values, sorted.
+     * @param p      The percentile, between 0 and 100.
+     * @return The percentile in question, or 0 if there are no values.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        final int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+}
@@ -1,9 +1,17 @@
 package io.github.foxyseta.telegrindr;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.BotSession;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import io.github.foxyseta.telegrindr.bot.Settings;
+import io.github.foxyseta.telegrindr.bot.TeleGrindr;
+import io.github.foxyseta.telegrindr.bot.WebhookServer;
+
 /**
  * This class features the application's entry point.
  * 
@@ -13,12 +21,18 @@ import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
  * @since 1.0
  */
 public class App {
+
+    /** The prefix shared by every system property read by {@link #settings}. */
+    final public static String PROPERTYPREFIX = "telegrindr.";
     
     /**
      * The application's entry point. It instantiates a single <code>TeleGrindr
-     * </code>.
+     * </code>, whose {@link Settings} are read from the system properties.
+     * Updates are received through long polling, unless a {@linkplain
+     * Settings#getWebhookUrl webhook URL} is set.
      * 
      * @see io.github.foxyseta.telegrindr.bot
+     * @see #settings
      * @param args Contains the bot's token, username and creator's ID.
      * @author FoxySeta
      * @version 1.0
@@ -26,18 +40,99 @@ public class App {
      */
     public static void main(String[] args) {
         try {
-            TelegramBotsApi api = new TelegramBotsApi(DefaultBotSession.class);
-            api.registerBot(new io.github.foxyseta.telegrindr.bot.TeleGrindr(
-                            args[0], args[1],
-                            Integer.parseInt(args[2])));
+            final Settings settings = settings();
+            final TeleGrindr bot = new TeleGrindr(args[0], args[1],
+                                                  Integer.parseInt(args[2]),
+                                                  settings);
+            if (settings.getWebhookUrl() == null) {
+                TelegramBotsApi api =
+                    new TelegramBotsApi(DefaultBotSession.class);
+                final BotSession session = api.registerBot(bot);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    session.stop();
+                    bot.onClosing();
+                }));
+            } else {
+                final WebhookServer webhook = new WebhookServer(bot, settings);
+                webhook.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(webhook::stop));
+            }
         } catch (ArrayIndexOutOfBoundsException e) {
             System.out.println("Main: needs a bot token, a bot username,"
                                + " and a creator ID (all passed as arguments)");
         } catch (NumberFormatException e) {
             System.out.println("Main: the creator ID should be an integer");
-        } catch (TelegramApiException e) {
+        } catch (IllegalArgumentException e) {
+            System.out.println("Main: " + e.getMessage());
+        } catch (TelegramApiException | IOException | UncheckedIOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Reads the bot's {@link Settings} from the system properties. Every
+     * property is named after its setter, preceded by {@link #PROPERTYPREFIX}
+     * (e.g. <code>-Dtelegrindr.parallelism=4</code>). Missing properties keep
+     * their default values.
+     * 
+     * @return The {@link Settings} in question.
+     * @throws IllegalArgumentException A property has an invalid value.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public static Settings settings() {
+        final Settings settings = new Settings();
+        settings.setParallelThreshold(Integer.getInteger(
+            PROPERTYPREFIX + "parallelThreshold",
+            settings.getParallelThreshold()));
+        settings.setParallelism(Integer.getInteger(
+            PROPERTYPREFIX + "parallelism", settings.getParallelism()));
+        settings.setCacheSize(Integer.getInteger(
+            PROPERTYPREFIX + "cacheSize", settings.getCacheSize()));
+        settings.setCacheTimeToLive(Integer.getInteger(
+            PROPERTYPREFIX + "cacheTimeToLive",
+            settings.getCacheTimeToLive()));
+        settings.setWebhookUrl(System.getProperty(
+            PROPERTYPREFIX + "webhookUrl", settings.getWebhookUrl()));
+        settings.setWebhookPort(Integer.getInteger(
+            PROPERTYPREFIX + "webhookPort", settings.getWebhookPort()));
+        settings.setWebhookThreads(Integer.getInteger(
+            PROPERTYPREFIX + "webhookThreads", settings.getWebhookThreads()));
+        settings.setWebhookQueue(Integer.getInteger(
+            PROPERTYPREFIX + "webhookQueue", settings.getWebhookQueue()));
+        settings.setVirtualThreads(Boolean.parseBoolean(System.getProperty(
+            PROPERTYPREFIX + "virtualThreads",
+            Boolean.toString(settings.getVirtualThreads()))));
+        settings.setDispatchThreads(Integer.getInteger(
+            PROPERTYPREFIX + "dispatchThreads", settings.getDispatchThreads()));
+        settings.setDispatchQueue(Integer.getInteger(
+            PROPERTYPREFIX + "dispatchQueue", settings.getDispatchQueue()));
+        settings.setWriteDelay(Integer.getInteger(
+            PROPERTYPREFIX + "writeDelay", settings.getWriteDelay()));
+        settings.setWriteBatch(Integer.getInteger(
+            PROPERTYPREFIX + "writeBatch", settings.getWriteBatch()));
+        settings.setProfileCacheSize(Integer.getInteger(
+            PROPERTYPREFIX + "profileCacheSize",
+            settings.getProfileCacheSize()));
+        settings.setProfileCacheIdle(Integer.getInteger(
+            PROPERTYPREFIX + "profileCacheIdle",
+            settings.getProfileCacheIdle()));
+        settings.setProfileStore(System.getProperty(
+            PROPERTYPREFIX + "profileStore", settings.getProfileStore()));
+        settings.setProfileStoreDirectory(System.getProperty(
+            PROPERTYPREFIX + "profileStoreDirectory",
+            settings.getProfileStoreDirectory()));
+        settings.setSnapshotDirectory(System.getProperty(
+            PROPERTYPREFIX + "snapshotDirectory",
+            settings.getSnapshotDirectory()));
+        settings.setOutboxThreads(Integer.getInteger(
+            PROPERTYPREFIX + "outboxThreads", settings.getOutboxThreads()));
+        settings.setOutboxRate(Integer.getInteger(
+            PROPERTYPREFIX + "outboxRate", settings.getOutboxRate()));
+        settings.setOutboxChatRate(Integer.getInteger(
+            PROPERTYPREFIX + "outboxChatRate", settings.getOutboxChatRate()));
+        return settings;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,240 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A <code>Dispatcher</code> runs tasks concurrently, except for tasks sharing
+ * the same key (e.g. updates from the same chat), which run one at a time in
+ * order of submission. Each key with pending tasks gets a lane, which is
+ * drained by a virtual thread when the JVM supports them, or by a bounded pool
+ * otherwise. A hot lane gives its thread back every {@link #BATCH} tasks, so
+ * that it cannot starve the others. Once too many tasks are pending, {@link
+ * #dispatch} blocks the caller. After {@link #shutdown}, new tasks are
+ * dropped.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class Dispatcher {
+
+    /** The maximum number of tasks a lane runs before yielding its thread. */
+    final public static int BATCH = 16;
+    /** The maximum number of seconds {@link #shutdown} waits for pending tasks. */
+    final public static long SHUTDOWNTIMEOUT = 60;
+
+    /**
+     * Instantiates a new {@link Dispatcher}.
+     *
+     * @param settings The {@link Settings} to be used.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public Dispatcher(Settings settings) {
+        final ExecutorService virtual = settings.getVirtualThreads() ? virtualThreads() : null;
+        executor = virtual != null ? virtual
+                : new ThreadPoolExecutor(settings.getDispatchThreads(), settings.getDispatchThreads(), 0,
+                        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        permits = new Semaphore(settings.getDispatchQueue());
+        logger.info("dispatching on " + (virtual != null ? "virtual threads"
+                : settings.getDispatchThreads() + " platform threads"));
+    }
+
+    /**
+     * Runs a task after every task previously dispatched with the same key.
+     * Blocks while too many tasks are pending. Once the {@link Dispatcher} is
+     * shut down, the task is dropped.
+     *
+     * @param key  The key serializing the task (e.g. a chat identifier).
+     * @param task The task to be run.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void dispatch(long key, Runnable task) {
+        if (closed) {
+            logger.warning("task for " + key + " dropped (shut down)");
+            return;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warning("task for " + key + " dropped (interrupted)");
+            return;
+        }
+        final Lane[] created = new Lane[1];
+        lanes.compute(key, (k, lane) -> {
+            if (lane == null)
+                lane = created[0] = new Lane(k);
+            lane.tasks.add(task);
+            return lane;
+        });
+        if (created[0] != null)
+            submit(created[0]);
+    }
+
+    /**
+     * Stops accepting tasks, then waits up to {@link #SHUTDOWNTIMEOUT} seconds
+     * for the pending ones to be run. Tasks still pending by then are dropped.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void shutdown() {
+        closed = true;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWNTIMEOUT);
+        // lanes resubmit themselves, so wait for them to be drained first
+        try {
+            while (!lanes.isEmpty() && System.nanoTime() < deadline)
+                TimeUnit.MILLISECONDS.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!lanes.isEmpty())
+            logger.warning(lanes.size() + " lanes still pending at shutdown");
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A <code>Lane</code> runs the pending tasks of a single key. A lane is
+     * in {@link #lanes} exactly as long as it has been submitted to the
+     * {@link #executor} and not drained yet.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private class Lane implements Runnable {
+
+        /**
+         * Instantiates a new, empty {@link Lane}.
+         *
+         * @param key See {@link #key}.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        Lane(Long key) {
+            this.key = key;
+        }
+
+        /**
+         * Runs up to {@link #BATCH} tasks, then either yields or leaves
+         * {@link #lanes} once there are none left. The lane yields even when a
+         * task throws an {@link Error}, so that the tasks behind it still run.
+         *
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        @Override
+        public void run() {
+            boolean drained = false;
+            try {
+                for (int i = 0; i < BATCH; ++i) {
+                    final Runnable[] next = new Runnable[1];
+                    lanes.computeIfPresent(key, (k, lane) -> {
+                        next[0] = lane.tasks.poll();
+                        return next[0] == null ? null : lane;
+                    });
+                    if (next[0] == null) {
+                        drained = true;
+                        return;
+                    }
+                    try {
+                        next[0].run();
+                    } catch (RuntimeException e) {
+                        logger.log(Level.SEVERE, "task for " + key + " failed", e);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            } finally {
+                if (!drained)
+                    submit(this);
+            }
+        }
+
+        /** The key of the tasks. */
+        final private Long key;
+        /** The pending tasks, guarded by {@link #lanes}. */
+        final private Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+
+    }
+
+    /** Logs notices regarding the dispatcher. */
+    final private static Logger logger = Logger.getLogger(Dispatcher.class.getName());
+
+    /** Runs the lanes. */
+    final private ExecutorService executor;
+    /** Limits the number of pending tasks. */
+    final private Semaphore permits;
+    /** The lane of every key with pending tasks. */
+    final private ConcurrentHashMap<Long, Lane> lanes = new ConcurrentHashMap<Long, Lane>();
+    /** Whether {@link #shutdown} has been called. */
+    private volatile boolean closed = false;
+
+    /**
+     * Submits a lane to the {@link #executor}. If the executor has already
+     * been shut down, the lane leaves {@link #lanes} and its pending tasks
+     * are dropped.
+     *
+     * @param lane The lane in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void submit(Lane lane) {
+        try {
+            executor.execute(lane);
+        } catch (RejectedExecutionException e) {
+            final int[] dropped = new int[1];
+            lanes.computeIfPresent(lane.key, (k, l) -> {
+                if (l != lane)
+                    return l;
+                dropped[0] = l.tasks.size();
+                return null;
+            });
+            permits.release(dropped[0]);
+            logger.warning(dropped[0] + " tasks for " + lane.key + " dropped (shut down)");
+        }
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for each task, if the
+     * JVM supports them (Java 21 or later). The executor is looked up
+     * reflectively, so that the same build also runs on older JVMs.
+     *
+     * @return The executor in question, or <code>null</code>.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+}
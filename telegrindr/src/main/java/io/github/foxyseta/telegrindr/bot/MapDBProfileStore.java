@@ -0,0 +1,293 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.mapdb.DB;
+import org.mapdb.Serializer;
+import org.telegram.abilitybots.api.db.DBContext;
+import org.telegram.abilitybots.api.db.Var;
+
+import io.github.foxyseta.telegrindr.bot.data.ChatStatistics;
+import io.github.foxyseta.telegrindr.bot.data.Profile;
+
+/**
+ * A <code>MapDBProfileStore</code> keeps the {@link Profile} instances of each
+ * chat in a {@linkplain #PROFILESTABLE table} of the bot's own database, whose
+ * values are written by the {@link ProfileSerializer}. Since the database is
+ * shared with the bot, closing the store leaves it open.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class MapDBProfileStore implements ProfileStore {
+
+    /** The name of the table of each chat, formatted with its identifier. */
+    final public static String PROFILESTABLE = "ProfileRecords_%d";
+    /**
+     * The name of the table of each chat before the {@link ProfileSerializer}
+     * was introduced, formatted with its identifier.
+     */
+    final public static String LEGACYTABLE = "Profiles_%d";
+    /** The name of the variable of each chat holding its statistics, formatted with its identifier. */
+    final public static String STATISTICSVAR = "Statistics_%d";
+
+    /**
+     * Instantiates a new {@link MapDBProfileStore}, moving every {@link
+     * Profile} out of the {@linkplain #LEGACYTABLE legacy tables}.
+     *
+     * @param mapdb The database in question.
+     * @param db    The bot's view of the same database.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public MapDBProfileStore(DB mapdb, DBContext db) {
+        this.mapdb = mapdb;
+        this.db = db;
+        migrate();
+    }
+
+    /**
+     * Retrieves a {@link Profile} from the table of its chat.
+     *
+     * @param chatId The chat where the {@link Profile} was set up.
+     * @param userId The user who set up the {@link Profile}.
+     * @return A new instance of the {@link Profile} in question, or
+     *         <code>null</code> if there is none.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public Profile get(Long chatId, Integer userId) {
+        return table(chatId).get(userId);
+    }
+
+    /**
+     * Stores (or replaces) some {@link Profile} instances in the table of their
+     * chat.
+     *
+     * @param chatId   The chat where the {@link Profile} instances were set up.
+     * @param profiles The {@link Profile} instances, by user identifier.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void putAll(Long chatId, Map<Integer, Profile> profiles) {
+        table(chatId).putAll(profiles);
+    }
+
+    /**
+     * Passes every {@link Profile} in the table of a chat to an action.
+     *
+     * @param chatId The chat whose {@link Profile} instances are visited.
+     * @param action The action in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void forEach(Long chatId, Consumer<Profile> action) {
+        for (Profile p : table(chatId).values())
+            if (p != null && p.user != null)
+                action.accept(p);
+    }
+
+    /**
+     * Lists every chat having a {@linkplain #PROFILESTABLE table of profiles}
+     * in the database.
+     *
+     * @return The identifiers of the chats in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public List<Long> chats() {
+        return chats(PROFILESTABLEPATTERN);
+    }
+
+    /**
+     * Retrieves the {@link ChatStatistics} of a chat from its {@linkplain
+     * #STATISTICSVAR variable}.
+     *
+     * @param chatId The chat in question.
+     * @return A new instance of the {@link ChatStatistics} in question, or
+     *         <code>null</code> if there are none or they cannot be read.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public ChatStatistics getStatistics(Long chatId) {
+        final byte[] bytes = db.<byte[]>getVar(String.format(STATISTICSVAR, chatId)).get();
+        if (bytes == null)
+            return null;
+        try {
+            return ChatStatistics.read(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            logger.warning("statistics of chat " + chatId + " discarded: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores (or replaces) the {@link ChatStatistics} of a chat in its
+     * {@linkplain #STATISTICSVAR variable}, so that they are committed along
+     * with its {@link Profile} instances.
+     *
+     * @param chatId     The chat in question.
+     * @param statistics The {@link ChatStatistics} in question, or <code>null
+     *                   </code> to remove them.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void putStatistics(Long chatId, ChatStatistics statistics) {
+        final Var<byte[]> var = db.getVar(String.format(STATISTICSVAR, chatId));
+        if (statistics == null) {
+            var.set(null);
+            return;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            statistics.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        var.set(bytes.toByteArray());
+    }
+
+    /**
+     * Commits the database directly, including any change made by the bot,
+     * even if the bot's view of the database defers its commits.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void commit() {
+        mapdb.commit();
+    }
+
+    /**
+     * Forgets the tables, leaving the database open.
+     *
+     * @throws IOException Never.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void close() throws IOException {
+        tables.clear();
+    }
+
+    /** Matches the name of a table of profiles. */
+    final private static String PROFILESTABLEREGEX = "ProfileRecords_(-?\\d+)";
+    /** Matches the name of a legacy table of profiles. */
+    final private static String LEGACYTABLEREGEX = "Profiles_(-?\\d+)";
+    /** The name of the variable storing the layout version of the tables. */
+    final private static String PROFILESVERSION = "ProfilesVersion";
+    /** The layout version of the {@linkplain #PROFILESTABLE tables}. */
+    final private static byte TABLESVERSION = 2;
+    /**
+     * The {@link Pattern} generated from the {@linkplain #PROFILESTABLEREGEX
+     * profiles' table regex}.
+     */
+    final private static Pattern PROFILESTABLEPATTERN = Pattern.compile(PROFILESTABLEREGEX);
+    /**
+     * The {@link Pattern} generated from the {@linkplain #LEGACYTABLEREGEX
+     * legacy table regex}.
+     */
+    final private static Pattern LEGACYTABLEPATTERN = Pattern.compile(LEGACYTABLEREGEX);
+    /** Logs notices regarding the store. */
+    final private static Logger logger = Logger.getLogger(MapDBProfileStore.class.getName());
+
+    /** The database in question. */
+    final private DB mapdb;
+    /** The bot's view of {@link #mapdb}. */
+    final private DBContext db;
+    /** The table of each chat, resolved on first use. */
+    final private Map<Long, Map<Integer, Profile>> tables = new ConcurrentHashMap<Long, Map<Integer, Profile>>();
+
+    /**
+     * Gets the table of a chat.
+     *
+     * @param chatId The identifier of the chat.
+     * @return The table in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Map<Integer, Profile> table(Long chatId) {
+        return tables.computeIfAbsent(chatId, chat -> mapdb
+                .hashMap(String.format(PROFILESTABLE, chat), Serializer.INTEGER, ProfileSerializer.INSTANCE)
+                .createOrOpen());
+    }
+
+    /**
+     * Lists every chat having a table in the database.
+     *
+     * @param pattern Matches the name of a table, capturing the chat.
+     * @return The identifiers of the chats in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private List<Long> chats(Pattern pattern) {
+        final List<Long> res = new ArrayList<Long>();
+        for (String name : mapdb.getAllNames()) {
+            final Matcher matcher = pattern.matcher(name);
+            if (matcher.matches())
+                res.add(Long.parseLong(matcher.group(1)));
+        }
+        return res;
+    }
+
+    /**
+     * Moves every {@link Profile} out of the {@linkplain #LEGACYTABLE legacy
+     * tables}, which relied on Java serialization, into the current ones. The
+     * legacy tables are left empty, since MapDB can neither drop them nor
+     * shrink its file: they stay in its catalog, and the space their records
+     * took is only reused by later writes. A database file only gets smaller
+     * than before the migration if it is rebuilt from scratch.
+     * 
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void migrate() {
+        final Var<Byte> version = db.getVar(PROFILESVERSION);
+        if (version.get() != null && version.get() >= TABLESVERSION)
+            return;
+        for (Long chat : chats(LEGACYTABLEPATTERN)) {
+            final Map<Integer, Profile> legacy = db.getMap(String.format(LEGACYTABLE, chat));
+            final Map<Integer, Profile> profiles = table(chat);
+            for (Map.Entry<Integer, Profile> p : legacy.entrySet())
+                if (p.getValue() != null && p.getValue().user != null)
+                    profiles.put(p.getKey(), p.getValue());
+            legacy.clear();
+            logger.info("profiles of chat " + chat + " migrated, leaving its legacy table empty");
+        }
+        version.set(TABLESVERSION);
+        mapdb.commit();
+    }
+
+}
@@ -0,0 +1,597 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import io.github.foxyseta.telegrindr.bot.data.ChatStatistics;
+import io.github.foxyseta.telegrindr.bot.data.Profile;
+import io.github.foxyseta.telegrindr.bot.data.ProfileCodec;
+
+/**
+ * A <code>MappedProfileStore</code> keeps the {@link Profile} instances of
+ * each chat in a memory-mapped file, outside of the heap. A file is made of
+ * fixed-size slots: the first one is a header, while each record takes as
+ * many consecutive slots as its {@linkplain ProfileCodec encoding} needs. A
+ * record is never overwritten: each change is written to other slots, and the
+ * old ones are left free for later records once the change is committed.
+ * Files are opened lazily and their records are checksummed but not decoded,
+ * so that a restart does not load every {@link Profile} onto the heap.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class MappedProfileStore implements ProfileStore {
+
+    /** The size of a slot, in bytes. */
+    final public static int SLOTSIZE = 256;
+    /** The extension of the file of each chat. */
+    final public static String EXTENSION = ".profiles";
+    /** The extension of the statistics of each chat, kept next to its file. */
+    final public static String STATISTICSEXTENSION = ".statistics";
+
+    /**
+     * Instantiates a new {@link MappedProfileStore}.
+     *
+     * @param directory The directory holding the file of each chat, created
+     *                  if missing.
+     * @throws IOException The directory could not be created.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public MappedProfileStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Retrieves a {@link Profile} from the file of its chat.
+     *
+     * @param chatId The chat where the {@link Profile} was set up.
+     * @param userId The user who set up the {@link Profile}.
+     * @return A new instance of the {@link Profile} in question, or
+     *         <code>null</code> if there is none.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public Profile get(Long chatId, Integer userId) {
+        return file(chatId).get(userId);
+    }
+
+    /**
+     * Stores (or replaces) some {@link Profile} instances in the file of their
+     * chat.
+     *
+     * @param chatId   The chat where the {@link Profile} instances were set up.
+     * @param profiles The {@link Profile} instances, by user identifier.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void putAll(Long chatId, Map<Integer, Profile> profiles) {
+        final ChatFile file = file(chatId);
+        for (Profile p : profiles.values())
+            file.put(p);
+    }
+
+    /**
+     * Passes every {@link Profile} in the file of a chat to an action.
+     *
+     * @param chatId The chat whose {@link Profile} instances are visited.
+     * @param action The action in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void forEach(Long chatId, Consumer<Profile> action) {
+        file(chatId).forEach(action);
+    }
+
+    /**
+     * Lists every chat having a file in the directory.
+     *
+     * @return The identifiers of the chats in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public List<Long> chats() {
+        final List<Long> res = new ArrayList<Long>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                final Matcher matcher = FILEPATTERN.matcher(file.getFileName().toString());
+                if (matcher.matches())
+                    res.add(Long.parseLong(matcher.group(1)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return res;
+    }
+
+    /**
+     * Reads the {@link ChatStatistics} of a chat from the file next to its
+     * {@link Profile} instances.
+     *
+     * @param chatId The chat in question.
+     * @return A new instance of the {@link ChatStatistics} in question, or
+     *         <code>null</code> if there are none or they cannot be read.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public ChatStatistics getStatistics(Long chatId) {
+        final Path file = statisticsFile(chatId);
+        if (!Files.exists(file))
+            return null;
+        try {
+            return ChatStatistics.read(ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (IOException e) {
+            logger.warning("statistics of chat " + chatId + " discarded: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the {@link ChatStatistics} of a chat next to its {@link Profile}
+     * instances, replacing the previous ones atomically.
+     *
+     * @param chatId     The chat in question.
+     * @param statistics The {@link ChatStatistics} in question, or <code>null
+     *                   </code> to remove them.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void putStatistics(Long chatId, ChatStatistics statistics) {
+        final Path file = statisticsFile(chatId), temporary = directory.resolve(file.getFileName() + ".tmp");
+        try {
+            if (statistics == null) {
+                Files.deleteIfExists(file);
+                return;
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                statistics.write(out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Forces every change to the open files onto the storage device.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void commit() {
+        for (ChatFile file : files.values())
+            file.force();
+    }
+
+    /**
+     * Commits, then closes every open file.
+     *
+     * @throws IOException A file could not be closed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void close() throws IOException {
+        commit();
+        for (ChatFile file : files.values())
+            file.channel.close();
+        files.clear();
+    }
+
+    /**
+     * A <code>ChatFile</code> is the open file of a single chat, guarded by
+     * its own lock. Its header holds {@link #MAGIC} and the number of slots in
+     * use. Each record starts with the user identifier (<code>0</code> if the
+     * slots are free), the number of its slots, the length of the encoding, a
+     * sequence number telling which record is the latest, should a crash
+     * leave two of them for the same user, and a CRC-32 of the encoding. A
+     * record failing its checksum was torn by a crash and gets skipped, so
+     * that the previous record of the same user is read instead. Since the
+     * pages of the file may reach the disk in any order, a crash may also
+     * leave the number of slots in use ahead of the header of the last run:
+     * the first run with an impossible number of slots ends the slots in use.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static class ChatFile {
+
+        /**
+         * Opens the file of a chat, creating it if needed, and indexes its
+         * records.
+         *
+         * @param path The path of the file.
+         * @throws IOException The file could not be opened or is corrupt.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        ChatFile(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            final long size = channel.size();
+            if (size == 0) {
+                map(INITIALSLOTS);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(USEDOFFSET, used = 1);
+                return;
+            }
+            if (size % SLOTSIZE != 0)
+                throw new IOException("MappedProfileStore.ChatFile: " + path + " is corrupt");
+            map((int) (size / SLOTSIZE));
+            if (buffer.getInt(0) != MAGIC)
+                throw new IOException("MappedProfileStore.ChatFile: " + path + " is no profile file");
+            used = buffer.getInt(USEDOFFSET);
+            if (used <= 0 || used > size / SLOTSIZE)
+                throw new IOException("MappedProfileStore.ChatFile: " + path + " is corrupt");
+            final Map<Integer, Long> sequences = new HashMap<Integer, Long>();
+            for (int slot = 1; slot < used;) {
+                final int offset = slot * SLOTSIZE, userId = buffer.getInt(offset),
+                        slots = buffer.getInt(offset + SLOTSOFFSET);
+                if (slots <= 0 || slots > used - slot) {
+                    logger.warning("slots from " + slot + " on were never written, truncating " + path);
+                    buffer.putInt(USEDOFFSET, used = slot);
+                    break;
+                }
+                if (userId != 0 && !valid(slot, slots)) {
+                    logger.warning("torn record of user " + userId + " skipped in " + path);
+                    release(slot);
+                    slot += slots;
+                    continue;
+                }
+                final long sequence = buffer.getLong(offset + SEQUENCEOFFSET);
+                next = Math.max(next, sequence + 1);
+                final Long latest = userId == 0 ? null : sequences.get(userId);
+                if (userId == 0)
+                    free(slot, slots);
+                else if (latest == null || latest < sequence) {
+                    final Integer older = index.put(userId, slot);
+                    if (older != null)
+                        release(older);
+                    sequences.put(userId, sequence);
+                } else
+                    release(slot);
+                slot += slots;
+            }
+        }
+
+        /**
+         * Decodes a record.
+         *
+         * @param userId The user identifier.
+         * @return The {@link Profile} in question or <code>null</code>.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        synchronized Profile get(Integer userId) {
+            final Integer slot = index.get(userId);
+            return slot == null ? null : decode(slot);
+        }
+
+        /**
+         * Encodes a record into free slots. The slots of the previous record
+         * of the same user are only released by the next {@link #force}, so
+         * that a crash leaves at least one whole record behind.
+         *
+         * @param profile The {@link Profile} in question.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        synchronized void put(Profile profile) {
+            final byte[] record = ProfileCodec.encode(profile);
+            final int userId = profile.user.getId(),
+                    slots = (RECORDHEADER + record.length + SLOTSIZE - 1) / SLOTSIZE;
+            final int slot = allocate(slots);
+            write(slot, userId, buffer.getInt(slot * SLOTSIZE + SLOTSOFFSET), record);
+            final Integer old = index.put(userId, slot);
+            if (old != null)
+                retired.add(old);
+        }
+
+        /**
+         * Decodes every record.
+         *
+         * @param action The action each {@link Profile} is passed to.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        void forEach(Consumer<Profile> action) {
+            final List<Profile> profiles = new ArrayList<Profile>();
+            synchronized (this) {
+                for (int slot : index.values())
+                    profiles.add(decode(slot));
+            }
+            profiles.forEach(action);
+        }
+
+        /**
+         * Forces every change onto the storage device, then releases the
+         * slots of the records replaced since the last call.
+         *
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        synchronized void force() {
+            buffer.force();
+            if (retired.isEmpty())
+                return;
+            for (int slot : retired)
+                release(slot);
+            retired.clear();
+            buffer.force();
+        }
+
+        /** Identifies the files of this class and the layout of their records. */
+        final private static int MAGIC = 0x54475032;
+        /** The offset of the number of slots in use within the header. */
+        final private static int USEDOFFSET = 4;
+        /** The offset of the number of slots within a record. */
+        final private static int SLOTSOFFSET = 4;
+        /** The offset of the length of the encoding within a record. */
+        final private static int LENGTHOFFSET = 8;
+        /** The offset of the sequence number within a record. */
+        final private static int SEQUENCEOFFSET = 12;
+        /** The offset of the checksum of the encoding within a record. */
+        final private static int CHECKSUMOFFSET = 20;
+        /** The size of the header of a record, in bytes. */
+        final private static int RECORDHEADER = 24;
+        /** The number of slots of a new file. */
+        final private static int INITIALSLOTS = 64;
+
+        /** The underlying file. */
+        final private FileChannel channel;
+        /** The first slot of the latest record of each user. */
+        final private Map<Integer, Integer> index = new HashMap<Integer, Integer>();
+        /** The first slot of each run of free slots, by number of slots. */
+        final private TreeMap<Integer, ArrayDeque<Integer>> free = new TreeMap<Integer, ArrayDeque<Integer>>();
+        /** The first slot of each record replaced since the last {@link #force}. */
+        final private List<Integer> retired = new ArrayList<Integer>();
+        /** The whole file, mapped in memory. */
+        private MappedByteBuffer buffer;
+        /** The number of slots in use, header included. */
+        private int used;
+        /** The sequence number of the next record. */
+        private long next;
+
+        /**
+         * Maps the file in memory, growing it if needed.
+         *
+         * @param slots The number of slots to be mapped.
+         * @throws IOException The file could not be mapped.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        private void map(int slots) throws IOException {
+            if (buffer != null)
+                buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slots * SLOTSIZE);
+        }
+
+        /**
+         * Finds room for a record, reusing free slots if possible.
+         *
+         * @param slots The number of slots needed.
+         * @return The first of the slots.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        private int allocate(int slots) {
+            final Map.Entry<Integer, ArrayDeque<Integer>> reusable = free.ceilingEntry(slots);
+            if (reusable != null) {
+                final int res = reusable.getValue().poll();
+                if (reusable.getValue().isEmpty())
+                    free.remove(reusable.getKey());
+                return res;
+            }
+            final int res = used, capacity = buffer.capacity() / SLOTSIZE;
+            if (res + slots > capacity)
+                try {
+                    map(Math.max(capacity * 2, res + slots));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            buffer.putInt(res * SLOTSIZE + SLOTSOFFSET, slots);
+            buffer.putInt(USEDOFFSET, used = res + slots);
+            return res;
+        }
+
+        /**
+         * Writes a record.
+         *
+         * @param slot   The first slot of the record.
+         * @param userId The user identifier.
+         * @param slots  The number of slots of the record.
+         * @param record The encoding of the {@link Profile}.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        private void write(int slot, int userId, int slots, byte[] record) {
+            final int offset = slot * SLOTSIZE;
+            final ByteBuffer view = buffer.duplicate();
+            view.position(offset + RECORDHEADER);
+            view.put(record);
+            buffer.putInt(offset + SLOTSOFFSET, slots);
+            buffer.putInt(offset + LENGTHOFFSET, record.length);
+            buffer.putLong(offset + SEQUENCEOFFSET, next++);
+            buffer.putInt(offset + CHECKSUMOFFSET, checksum(offset, record.length));
+            buffer.putInt(offset, userId);
+        }
+
+        /**
+         * Checks whether a record was written completely.
+         *
+         * @param slot  The first slot of the record.
+         * @param slots The number of slots of the record.
+         * @return <code>true</code> if its encoding fits its slots and matches
+         *         its checksum, <code>false</code> otherwise.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        private boolean valid(int slot, int slots) {
+            final int offset = slot * SLOTSIZE, length = buffer.getInt(offset + LENGTHOFFSET);
+            return length >= 0 && length <= slots * SLOTSIZE - RECORDHEADER
+                    && buffer.getInt(offset + CHECKSUMOFFSET) == checksum(offset, length);
+        }
+
+        /**
+         * Computes the CRC-32 of the encoding of a record.
+         *
+         * @param offset The offset of the record.
+         * @param length The length of the encoding.
+         * @return The checksum in question.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        private int checksum(int offset, int length) {
+            final ByteBuffer view = buffer.duplicate();
+            view.position(offset + RECORDHEADER).limit(offset + RECORDHEADER + length);
+            final CRC32 crc = new CRC32();
+            crc.update(view);
+            return (int) crc.getValue();
+        }
+
+        /**
+         * Decodes the record starting at a slot.
+         *
+         * @param slot The slot in question.
+         * @return The {@link Profile} in question.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        private Profile decode(int slot) {
+            final int offset = slot * SLOTSIZE;
+            final byte[] record = new byte[buffer.getInt(offset + LENGTHOFFSET)];
+            final ByteBuffer view = buffer.duplicate();
+            view.position(offset + RECORDHEADER);
+            view.get(record);
+            try {
+                return ProfileCodec.decode(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Marks the slots of a record as free.
+         *
+         * @param slot The first slot of the record.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        private void release(int slot) {
+            buffer.putInt(slot * SLOTSIZE, 0);
+            free(slot, buffer.getInt(slot * SLOTSIZE + SLOTSOFFSET));
+        }
+
+        /**
+         * Remembers a run of free slots.
+         *
+         * @param slot  The first slot of the run.
+         * @param slots The number of slots in the run.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        private void free(int slot, int slots) {
+            free.computeIfAbsent(slots, n -> new ArrayDeque<Integer>()).add(slot);
+        }
+
+    }
+
+    /** Matches the name of the file of a chat. */
+    final private static String FILEREGEX = "(-?\\d+)\\" + EXTENSION;
+    /** The {@link Pattern} generated from {@link #FILEREGEX}. */
+    final private static Pattern FILEPATTERN = Pattern.compile(FILEREGEX);
+    /** Logs notices regarding the store. */
+    final private static Logger logger = Logger.getLogger(MappedProfileStore.class.getName());
+
+    /** The directory holding the file of each chat. */
+    final private Path directory;
+    /** The file of each chat, opened on first use. */
+    final private Map<Long, ChatFile> files = new ConcurrentHashMap<Long, ChatFile>();
+
+    /**
+     * Gets the file of a chat, opening it if needed.
+     *
+     * @param chatId The identifier of the chat.
+     * @return The file in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private ChatFile file(Long chatId) {
+        return files.computeIfAbsent(chatId, chat -> {
+            try {
+                return new ChatFile(directory.resolve(chat + EXTENSION));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Gets the path of the statistics of a chat.
+     *
+     * @param chatId The identifier of the chat.
+     * @return The path in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Path statisticsFile(Long chatId) {
+        return directory.resolve(chatId + STATISTICSEXTENSION);
+    }
+
+}
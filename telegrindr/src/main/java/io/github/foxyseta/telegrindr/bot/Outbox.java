@@ -0,0 +1,477 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+/**
+ * An <code>Outbox</code> sends the bot's messages in the background, so that
+ * handlers return as soon as their replies are queued. Messages to the same
+ * chat are sent in order, and consecutive texts with the same formatting are
+ * coalesced into a single message. Token buckets keep each chat within
+ * {@link Settings#getOutboxChatRate} messages per minute and the whole bot
+ * within {@link Settings#getOutboxRate} messages per second. Each chat queues
+ * at most a minute's worth of items: beyond that, the oldest one waiting is
+ * dropped, since it would be sent too late to matter. Should Telegram
+ * answer <code>429 Too Many Requests</code> anyway, the chat waits for the
+ * time Telegram asks for, then the message is sent again.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class Outbox {
+
+    /** The maximum length of a text message. */
+    final public static int MAXLENGTH = 4096;
+    /** The number of messages a chat may send in a burst. */
+    final public static int CHATBURST = 3;
+    /** The HTTP status Telegram uses to enforce its rate limits. */
+    final public static int TOOMANYREQUESTS = 429;
+
+    /**
+     * Instantiates a new {@link Outbox}.
+     *
+     * @param sender   The {@link DefaultAbsSender} actually sending the
+     *                 messages.
+     * @param settings The {@link Settings} to be used.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public Outbox(DefaultAbsSender sender, Settings settings) {
+        this.sender = sender;
+        chatRate = settings.getOutboxChatRate() / 60.0;
+        chatQueue = Math.max(CHATBURST, settings.getOutboxChatRate());
+        global = new TokenBucket(settings.getOutboxRate(), settings.getOutboxRate());
+        workers = Executors.newFixedThreadPool(settings.getOutboxThreads(), r -> {
+            final Thread thread = new Thread(r, "telegrindr-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < settings.getOutboxThreads(); ++i)
+            workers.execute(this::work);
+    }
+
+    /**
+     * Queues a plain text message.
+     *
+     * @param chatId The recipient chat.
+     * @param text   The text of the message.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void send(Long chatId, String text) {
+        enqueue(chatId, new Item(text, false, null));
+    }
+
+    /**
+     * Queues a Markdown message.
+     *
+     * @param chatId The recipient chat.
+     * @param text   The Markdown text of the message.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void sendMd(Long chatId, String text) {
+        enqueue(chatId, new Item(text, true, null));
+    }
+
+    /**
+     * Queues any other method concerning a chat. Answers to callback queries
+     * are not messages, so they do not count against the rate limits.
+     *
+     * @param chatId The chat in question.
+     * @param method The method to be executed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void execute(Long chatId, BotApiMethod<?> method) {
+        enqueue(chatId, new Item(null, false, method));
+    }
+
+    /**
+     * Waits for the queued messages to be sent, then stops.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void close() {
+        final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        try {
+            while (pending() > 0 && System.nanoTime() < deadline)
+                TimeUnit.MILLISECONDS.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+    }
+
+    /**
+     * An <code>Item</code> is either a text message or any other method.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static class Item {
+
+        /**
+         * Instantiates a new {@link Item}.
+         *
+         * @param text     See {@link #text}.
+         * @param markdown See {@link #markdown}.
+         * @param method   See {@link #method}.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        Item(String text, boolean markdown, BotApiMethod<?> method) {
+            this.text = text;
+            this.markdown = markdown;
+            this.method = method;
+        }
+
+        /** The text of the message, or <code>null</code>. */
+        final private String text;
+        /** Whether {@link #text} is formatted with Markdown. */
+        final private boolean markdown;
+        /** The method to be executed, if the item is no text. */
+        final private BotApiMethod<?> method;
+
+    }
+
+    /**
+     * A <code>TokenBucket</code> allows a given rate of events, with bursts of
+     * up to a given number of events.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static class TokenBucket {
+
+        /**
+         * Instantiates a new, full {@link TokenBucket}.
+         *
+         * @param rate     The number of tokens added each second.
+         * @param capacity The maximum number of tokens.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        TokenBucket(double rate, int capacity) {
+            this.rate = rate / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            tokens = capacity;
+        }
+
+        /**
+         * Takes a token if there is one.
+         *
+         * @return <code>0</code> if a token was taken, otherwise the number of
+         *         nanoseconds until there is one.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        synchronized long take() {
+            final long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilled) * rate);
+            refilled = now;
+            if (tokens >= 1) {
+                --tokens;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / rate);
+        }
+
+        /**
+         * Puts back a token which was taken but not used.
+         *
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        synchronized void giveBack() {
+            tokens = Math.min(capacity, tokens + 1);
+        }
+
+        /** The number of tokens added each nanosecond. */
+        final private double rate;
+        /** The maximum number of tokens. */
+        final private int capacity;
+        /** The current number of tokens. */
+        private double tokens;
+        /** When {@link #tokens} was last refilled. */
+        private long refilled = System.nanoTime();
+
+    }
+
+    /**
+     * A <code>Chat</code> holds the queued items of a single chat, guarded by
+     * its own lock. It is in the {@link #ready} queue exactly as long as it
+     * is scheduled, so that only one worker at a time sends its items.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private class Chat implements Delayed {
+
+        /**
+         * Instantiates a new, empty {@link Chat}.
+         *
+         * @param id See {@link #id}.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        Chat(Long id) {
+            this.id = id;
+        }
+
+        /**
+         * Gets the time left before the chat may send.
+         *
+         * @param unit The unit of the result.
+         * @return The time in question.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Compares the chats by the time they may send.
+         *
+         * @param other The other chat.
+         * @return A negative integer, zero or a positive integer if this chat
+         *         may send earlier, at the same time or later.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        /** The identifier of the chat. */
+        final private Long id;
+        /** The queued items, oldest first. */
+        final private ArrayDeque<Item> items = new ArrayDeque<Item>();
+        /** Limits the messages sent to the chat. */
+        final private TokenBucket bucket = new TokenBucket(chatRate, CHATBURST);
+        /** Whether the chat is in the {@link #ready} queue or being sent. */
+        private boolean scheduled;
+        /** Whether items have been dropped since the queue was last empty. */
+        private boolean overflowing;
+        /** When the chat may send, as per {@link System#nanoTime}. */
+        private volatile long readyAt;
+
+    }
+
+    /** Logs notices regarding the outgoing messages. */
+    final private static Logger logger = Logger.getLogger(Outbox.class.getName());
+
+    /** Actually sends the messages. */
+    final private DefaultAbsSender sender;
+    /** The number of messages each chat may send each second. */
+    final private double chatRate;
+    /** The maximum number of items queued by each chat. */
+    final private int chatQueue;
+    /** Limits the messages sent by the whole bot. */
+    final private TokenBucket global;
+    /** Send the messages. */
+    final private ExecutorService workers;
+    /** The queue of every chat. */
+    final private Map<Long, Chat> chats = new ConcurrentHashMap<Long, Chat>();
+    /** The chats having items to send, by the time they may send. */
+    final private DelayQueue<Chat> ready = new DelayQueue<Chat>();
+
+    /**
+     * Queues an item, scheduling its chat if needed. If the chat has already
+     * queued {@link #chatQueue} items, the oldest one is dropped, unless it
+     * is the next to be sent.
+     *
+     * @param chatId The chat in question.
+     * @param item   The item in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void enqueue(Long chatId, Item item) {
+        final Chat chat = chats.computeIfAbsent(chatId, Chat::new);
+        synchronized (chat) {
+            if (chat.items.size() >= chatQueue) {
+                final Item next = chat.items.poll();
+                chat.items.poll();
+                chat.items.addFirst(next);
+                if (!chat.overflowing)
+                    logger.warning("chat " + chat.id + " is too far behind: its oldest replies are dropped");
+                chat.overflowing = true;
+            }
+            chat.items.add(item);
+            if (chat.scheduled)
+                return;
+            chat.scheduled = true;
+        }
+        ready.add(chat);
+    }
+
+    /**
+     * Counts the items still to be sent.
+     *
+     * @return The number of items.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private int pending() {
+        int res = 0;
+        for (Chat chat : chats.values())
+            synchronized (chat) {
+                res += chat.items.size();
+            }
+        return res;
+    }
+
+    /**
+     * Sends the items of the ready chats until interrupted.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void work() {
+        try {
+            while (true)
+                send(ready.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends the next message of a chat, if the rate limits allow it, then
+     * schedules the chat again if it has more items, even if the message
+     * could not be sent.
+     *
+     * @param chat The chat in question, taken from {@link #ready}.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void send(Chat chat) {
+        final Item head;
+        synchronized (chat) {
+            head = chat.items.peek();
+        }
+        final boolean limited = !(head.method instanceof AnswerCallbackQuery);
+        long wait = limited ? chat.bucket.take() : 0;
+        if (wait == 0 && limited) {
+            wait = global.take();
+            // the chat must not waste its budget while the whole bot waits
+            if (wait > 0)
+                chat.bucket.giveBack();
+        }
+        if (wait > 0) {
+            reschedule(chat, wait);
+            return;
+        }
+        final BotApiMethod<?> method;
+        synchronized (chat) {
+            method = head.method != null ? chat.items.poll().method : coalesce(chat);
+        }
+        try {
+            sender.execute(method);
+        } catch (TelegramApiRequestException e) {
+            if (e.getErrorCode() != null && e.getErrorCode() == TOOMANYREQUESTS && e.getParameters() != null
+                    && e.getParameters().getRetryAfter() != null) {
+                synchronized (chat) {
+                    chat.items.addFirst(new Item(null, false, method));
+                }
+                logger.warning("chat " + chat.id + " throttled for " + e.getParameters().getRetryAfter() + " s");
+                reschedule(chat, TimeUnit.SECONDS.toNanos(e.getParameters().getRetryAfter()));
+                return;
+            }
+            logger.log(Level.WARNING, "message to chat " + chat.id + " failed: " + e.getApiResponse());
+        } catch (TelegramApiException e) {
+            logger.log(Level.WARNING, "message to chat " + chat.id + " failed", e);
+        } catch (RuntimeException e) {
+            // neither the chat nor the worker may be lost to a failing client
+            logger.log(Level.SEVERE, "message to chat " + chat.id + " failed", e);
+        }
+        reschedule(chat, 0);
+    }
+
+    /**
+     * Joins the consecutive texts at the head of a chat which share the same
+     * formatting, as long as they fit a single message.
+     *
+     * @param chat The chat in question, whose lock is held.
+     * @return The message in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private SendMessage coalesce(Chat chat) {
+        final Item first = chat.items.poll();
+        final StringBuilder text = new StringBuilder(first.text);
+        for (Item next = chat.items.peek(); next != null && next.method == null && next.markdown == first.markdown
+                && text.length() + 1 + next.text.length() <= MAXLENGTH; next = chat.items.peek()) {
+            text.append('\n').append(next.text);
+            chat.items.poll();
+        }
+        final SendMessage res = new SendMessage();
+        res.setChatId(chat.id.toString());
+        res.setText(text.toString());
+        res.enableMarkdown(first.markdown);
+        return res;
+    }
+
+    /**
+     * Puts a chat back in the {@link #ready} queue if it has more items,
+     * otherwise marks it as not scheduled.
+     *
+     * @param chat  The chat in question.
+     * @param delay The number of nanoseconds the chat has to wait.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void reschedule(Chat chat, long delay) {
+        synchronized (chat) {
+            if (chat.items.isEmpty()) {
+                chat.scheduled = false;
+                chat.overflowing = false;
+                return;
+            }
+        }
+        chat.readyAt = System.nanoTime() + delay;
+        ready.add(chat);
+    }
+
+}
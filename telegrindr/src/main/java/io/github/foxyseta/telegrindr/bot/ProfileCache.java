@@ -0,0 +1,297 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.foxyseta.telegrindr.bot.data.Profile;
+import io.github.foxyseta.telegrindr.bot.data.ProfileCodec;
+
+/**
+ * A <code>ProfileCache</code> keeps the most recently used {@link Profile}
+ * instances of each chat in memory, in front of a {@link WriteBehind}. Each
+ * chat holds at most {@link Settings#getProfileCacheSize} profiles, evicting
+ * the least recently used one, and chats left idle for {@link
+ * Settings#getProfileCacheIdle} seconds are unloaded altogether. Writes go
+ * through to the {@link WriteBehind}, so that evicting a {@link Profile} never
+ * loses it. Missing profiles are cached as well.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class ProfileCache {
+
+    /** A rough estimate of the bytes taken by a cache entry, besides its {@link Profile}. */
+    final public static int ENTRYBYTES = 64;
+    /**
+     * A rough estimate of the bytes taken by a cached {@link Profile}, besides
+     * its tags and the characters of its fields.
+     */
+    final public static int PROFILEBYTES = 384;
+    /** A rough estimate of the bytes taken by a tag, besides its characters. */
+    final public static int TAGBYTES = 80;
+
+    /**
+     * Instantiates a new, empty {@link ProfileCache}.
+     *
+     * @param writes   The {@link WriteBehind} the {@link Profile} instances
+     *                 are read from and written to.
+     * @param settings The {@link Settings} to be used.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public ProfileCache(WriteBehind writes, Settings settings) {
+        this.writes = writes;
+        capacity = settings.getProfileCacheSize();
+        idle = TimeUnit.SECONDS.toNanos(settings.getProfileCacheIdle());
+        if (idle > 0) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "telegrindr-profile-cache");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(this::unloadIdle, idle, idle, TimeUnit.NANOSECONDS);
+        } else
+            sweeper = null;
+    }
+
+    /**
+     * Retrieves a {@link Profile}, loading it if needed.
+     *
+     * @param chatId The chat where the {@link Profile} was set up.
+     * @param userId The user who set up the {@link Profile}.
+     * @return The {@link Profile} in question or <code>null</code>. It is
+     *         shared, so it must not be modified.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public Profile get(Long chatId, Integer userId) {
+        final Chat chat = chat(chatId);
+        final long version;
+        synchronized (chat) {
+            if (chat.profiles.containsKey(userId)) {
+                hits.incrementAndGet();
+                return chat.profiles.get(userId);
+            }
+            version = chat.version;
+        }
+        misses.incrementAndGet();
+        final Profile res = writes.get(chatId, userId);
+        synchronized (chat) {
+            // a concurrent put makes what was just loaded out of date
+            if (chat.version == version)
+                chat.profiles.putIfAbsent(userId, res);
+        }
+        return res;
+    }
+
+    /**
+     * Stores a {@link Profile}, both here and in the {@link WriteBehind}. The
+     * {@link Profile} must not be modified afterwards.
+     *
+     * @param chatId  The chat where the {@link Profile} was set up.
+     * @param profile The up-to-date {@link Profile}.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void put(Long chatId, Profile profile) {
+        // writing first ensures that any load racing with this put is refused
+        writes.put(chatId, profile);
+        final Chat chat = chat(chatId);
+        synchronized (chat) {
+            ++chat.version;
+            chat.profiles.put(profile.user.getId(), profile);
+        }
+    }
+
+    /**
+     * Unloads every chat which has not been used for too long.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void unloadIdle() {
+        final long now = System.nanoTime();
+        chats.values().removeIf(chat -> now - chat.lastUsed > idle);
+    }
+
+    /**
+     * Stops unloading idle chats.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void close() {
+        if (sweeper != null)
+            sweeper.shutdownNow();
+    }
+
+    /**
+     * Gets the number of lookups served from memory so far.
+     *
+     * @return The number of cache hits.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups which had to be loaded so far.
+     *
+     * @return The number of cache misses.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of chats currently loaded.
+     *
+     * @return The number of chats.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getChats() {
+        return chats.size();
+    }
+
+    /**
+     * Gets the number of {@link Profile} instances currently cached, missing
+     * ones included.
+     *
+     * @return The number of profiles.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public long getProfiles() {
+        long res = 0;
+        for (Chat chat : chats.values())
+            synchronized (chat) {
+                res += chat.profiles.size();
+            }
+        return res;
+    }
+
+    /**
+     * Estimates the memory taken by the cached {@link Profile} instances from
+     * their actual contents, since profiles with many tags take several times
+     * as much as plain ones. Every cached {@link Profile} is encoded, so this
+     * is only meant for occasional reports.
+     *
+     * @return The number of bytes, roughly.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public long getBytes() {
+        long res = 0;
+        for (Chat chat : chats.values()) {
+            final List<Profile> profiles;
+            synchronized (chat) {
+                profiles = new ArrayList<Profile>(chat.profiles.values());
+            }
+            for (Profile p : profiles)
+                res += bytes(p);
+        }
+        return res;
+    }
+
+    /**
+     * A <code>Chat</code> holds the cached {@link Profile} instances of a
+     * single chat, guarded by its own lock.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private class Chat {
+
+        /** The cached profiles, least recently used first. */
+        final private Map<Integer, Profile> profiles = new LinkedHashMap<Integer, Profile>(16, 0.75f, true) {
+
+            /** This {@link java.io.Serializable}'s version number. */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Profile> eldest) {
+                return size() > capacity;
+            }
+
+        };
+        /** The number of puts so far. */
+        private long version;
+        /** When the chat was last used, as per {@link System#nanoTime}. */
+        private volatile long lastUsed = System.nanoTime();
+
+    }
+
+    /** The {@link WriteBehind} the profiles are read from and written to. */
+    final private WriteBehind writes;
+    /** The maximum number of profiles cached for each chat. */
+    final private int capacity;
+    /** The nanoseconds a chat stays loaded without being used. */
+    final private long idle;
+    /** Unloads idle chats, or <code>null</code> if they are never unloaded. */
+    final private ScheduledExecutorService sweeper;
+    /** Every loaded chat. */
+    final private Map<Long, Chat> chats = new ConcurrentHashMap<Long, Chat>();
+    /** The number of cache hits so far. */
+    final private AtomicLong hits = new AtomicLong();
+    /** The number of cache misses so far. */
+    final private AtomicLong misses = new AtomicLong();
+
+    /**
+     * Estimates the memory taken by a cache entry.
+     *
+     * @param profile The cached {@link Profile}, or <code>null</code> if it is
+     *                missing.
+     * @return The number of bytes, roughly.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static long bytes(Profile profile) {
+        if (profile == null)
+            return ENTRYBYTES;
+        // the encoding is about as long as the strings of the profile, which
+        // its rendered cards repeat
+        return ENTRYBYTES + PROFILEBYTES + (long) TAGBYTES * profile.unmodifiableTags().size()
+                + 2L * ProfileCodec.encode(profile).length;
+    }
+
+    /**
+     * Gets a chat, loading it if needed, and marks it as used.
+     *
+     * @param chatId The identifier of the chat.
+     * @return The chat in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Chat chat(Long chatId) {
+        final Chat res = chats.computeIfAbsent(chatId, c -> new Chat());
+        res.lastUsed = System.nanoTime();
+        return res;
+    }
+
+}
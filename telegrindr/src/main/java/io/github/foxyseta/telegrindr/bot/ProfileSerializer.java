@@ -0,0 +1,66 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import java.io.IOException;
+
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.Serializer;
+
+import io.github.foxyseta.telegrindr.bot.data.Profile;
+import io.github.foxyseta.telegrindr.bot.data.ProfileCodec;
+
+/**
+ * A <code>ProfileSerializer</code> lets MapDB store each {@link Profile} as
+ * its {@linkplain ProfileCodec record} alone, preceded by its length, without
+ * any stream header or class descriptor.
+ *
+ * @see MapDBProfileStore
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class ProfileSerializer implements Serializer<Profile> {
+
+    /** The only instance needed, since the serializer has no state. */
+    final public static ProfileSerializer INSTANCE = new ProfileSerializer();
+
+    /**
+     * Writes the record of a {@link Profile}.
+     *
+     * @param out     The output to write to.
+     * @param profile The {@link Profile} in question.
+     * @throws IOException The output failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void serialize(DataOutput2 out, Profile profile) throws IOException {
+        final byte[] record = ProfileCodec.encode(profile);
+        out.packInt(record.length);
+        out.write(record);
+    }
+
+    /**
+     * Reads the record of a {@link Profile}.
+     *
+     * @param in        The input to read from.
+     * @param available The number of bytes available, ignored.
+     * @return The decoded {@link Profile}.
+     * @throws IOException The record is malformed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public Profile deserialize(DataInput2 in, int available) throws IOException {
+        final byte[] record = new byte[in.unpackInt()];
+        in.readFully(record);
+        return ProfileCodec.decode(record);
+    }
+
+    /** Use {@link #INSTANCE} instead. */
+    private ProfileSerializer() {
+    }
+
+}
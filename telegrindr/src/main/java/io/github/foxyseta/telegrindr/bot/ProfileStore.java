@@ -0,0 +1,119 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import io.github.foxyseta.telegrindr.bot.data.ChatStatistics;
+import io.github.foxyseta.telegrindr.bot.data.Profile;
+
+/**
+ * A <code>ProfileStore</code> persists the {@link Profile} instances of every
+ * chat. Writes become durable once {@linkplain #commit committed}. Every
+ * method is thread-safe, but only a single thread is expected to write at a
+ * time.
+ *
+ * @see MapDBProfileStore
+ * @see MappedProfileStore
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public interface ProfileStore extends Closeable {
+
+    /**
+     * Retrieves a {@link Profile}.
+     *
+     * @param chatId The chat where the {@link Profile} was set up.
+     * @param userId The user who set up the {@link Profile}.
+     * @return A new instance of the {@link Profile} in question, or
+     *         <code>null</code> if there is none.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    Profile get(Long chatId, Integer userId);
+
+    /**
+     * Stores (or replaces) some {@link Profile} instances of a chat.
+     *
+     * @param chatId   The chat where the {@link Profile} instances were set
+     *                 up.
+     * @param profiles The {@link Profile} instances, by user identifier.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    void putAll(Long chatId, Map<Integer, Profile> profiles);
+
+    /**
+     * Stores (or replaces) a {@link Profile}.
+     *
+     * @param chatId  The chat where the {@link Profile} was set up.
+     * @param profile The {@link Profile} in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    default void put(Long chatId, Profile profile) {
+        putAll(chatId, Map.of(profile.user.getId(), profile));
+    }
+
+    /**
+     * Passes every {@link Profile} of a chat to an action, in no particular
+     * order.
+     *
+     * @param chatId The chat whose {@link Profile} instances are visited.
+     * @param action The action in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    void forEach(Long chatId, Consumer<Profile> action);
+
+    /**
+     * Lists every chat having at least a {@link Profile}.
+     *
+     * @return The identifiers of the chats in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    List<Long> chats();
+
+    /**
+     * Retrieves the {@link ChatStatistics} of a chat.
+     *
+     * @param chatId The chat in question.
+     * @return A new instance of the {@link ChatStatistics} in question, or
+     *         <code>null</code> if there are none or they cannot be read.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    ChatStatistics getStatistics(Long chatId);
+
+    /**
+     * Stores (or replaces) the {@link ChatStatistics} of a chat, along with
+     * its {@link Profile} instances.
+     *
+     * @param chatId     The chat in question.
+     * @param statistics The {@link ChatStatistics} in question, or <code>null
+     *                   </code> to remove them.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    void putStatistics(Long chatId, ChatStatistics statistics);
+
+    /**
+     * Makes every previous write durable.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    void commit();
+
+}
@@ -0,0 +1,757 @@
+package io.github.foxyseta.telegrindr.bot;
+
+/**
+ * A <code>Settings</code> object collects the tunable parameters of a {@link
+ * TeleGrindr}. Every parameter starts with a sensible default.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class Settings {
+
+    /** The default value for {@link #parallelThreshold}. */
+    final public static int DEFAULTPARALLELTHRESHOLD = 10000;
+    /** The default value for {@link #cacheSize}. */
+    final public static int DEFAULTCACHESIZE = 64;
+    /** The default value for {@link #cacheTimeToLive}. */
+    final public static int DEFAULTCACHETIMETOLIVE = 60;
+    /** The default value for {@link #webhookPort}. */
+    final public static int DEFAULTWEBHOOKPORT = 8080;
+    /** The default value for {@link #webhookQueue}. */
+    final public static int DEFAULTWEBHOOKQUEUE = 1000;
+    /** The default value for {@link #dispatchQueue}. */
+    final public static int DEFAULTDISPATCHQUEUE = 10000;
+    /** The default value for {@link #writeDelay}. */
+    final public static int DEFAULTWRITEDELAY = 1000;
+    /** The default value for {@link #writeBatch}. */
+    final public static int DEFAULTWRITEBATCH = 1000;
+    /** The default value for {@link #profileCacheSize}. */
+    final public static int DEFAULTPROFILECACHESIZE = 1000;
+    /** The default value for {@link #profileCacheIdle}. */
+    final public static int DEFAULTPROFILECACHEIDLE = 600;
+    /** The {@link #profileStore} keeping profiles in the bot's database. */
+    final public static String MAPDBSTORE = "mapdb";
+    /** The {@link #profileStore} keeping profiles in memory-mapped files. */
+    final public static String MAPPEDSTORE = "mmap";
+    /** The default value for {@link #profileStoreDirectory}. */
+    final public static String DEFAULTPROFILESTOREDIRECTORY = "profiles";
+    /** The default value for {@link #snapshotDirectory}. */
+    final public static String DEFAULTSNAPSHOTDIRECTORY = "snapshots";
+    /** The default value for {@link #outboxThreads}. */
+    final public static int DEFAULTOUTBOXTHREADS = 4;
+    /** The default value for {@link #outboxRate}. */
+    final public static int DEFAULTOUTBOXRATE = 30;
+    /** The default value for {@link #outboxChatRate}. */
+    final public static int DEFAULTOUTBOXCHATRATE = 20;
+
+    /**
+     * Gets the minimum number of profiles a chat needs before its queries are
+     * evaluated in parallel.
+     *
+     * @see #parallelThreshold
+     * @return The threshold in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the minimum number of profiles a chat needs before its queries are
+     * evaluated in parallel.
+     *
+     * @see #parallelThreshold
+     * @param parallelThreshold The new threshold.
+     * @throws IllegalArgumentException The threshold is negative.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 0)
+            throw new IllegalArgumentException(
+                "Settings.setParallelThreshold: " + parallelThreshold + " < 0");
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Gets the number of worker threads used by parallel queries.
+     *
+     * @see #parallelism
+     * @return The parallelism level.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of worker threads used by parallel queries.
+     *
+     * @see #parallelism
+     * @param parallelism The new parallelism level.
+     * @throws IllegalArgumentException The parallelism level is not positive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(
+                "Settings.setParallelism: " + parallelism + " <= 0");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the maximum number of query results cached for each chat.
+     *
+     * @see #cacheSize
+     * @return The size in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Sets the maximum number of query results cached for each chat.
+     *
+     * @see #cacheSize
+     * @param cacheSize The new size, or <code>0</code> to disable caching.
+     * @throws IllegalArgumentException The size is negative.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setCacheSize(int cacheSize) {
+        if (cacheSize < 0)
+            throw new IllegalArgumentException(
+                "Settings.setCacheSize: " + cacheSize + " < 0");
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Gets the number of seconds a query result stays cached.
+     *
+     * @see #cacheTimeToLive
+     * @return The lifetime in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    /**
+     * Sets the number of seconds a query result stays cached.
+     *
+     * @see #cacheTimeToLive
+     * @param cacheTimeToLive The new lifetime.
+     * @throws IllegalArgumentException The lifetime is negative.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setCacheTimeToLive(int cacheTimeToLive) {
+        if (cacheTimeToLive < 0)
+            throw new IllegalArgumentException(
+                "Settings.setCacheTimeToLive: " + cacheTimeToLive + " < 0");
+        this.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    /**
+     * Gets the public URL updates are sent to in webhook mode.
+     *
+     * @see #webhookUrl
+     * @return The URL in question, or <code>null</code> for long polling.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public String getWebhookUrl() {
+        return webhookUrl;
+    }
+
+    /**
+     * Sets the public URL updates are sent to in webhook mode.
+     *
+     * @see #webhookUrl
+     * @param webhookUrl The new URL (reaching {@link #webhookPort}), or
+     * <code>null</code> for long polling.
+     * @throws IllegalArgumentException The URL is empty.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setWebhookUrl(String webhookUrl) {
+        if (webhookUrl != null && webhookUrl.isEmpty())
+            throw new IllegalArgumentException(
+                "Settings.setWebhookUrl: empty URL");
+        this.webhookUrl = webhookUrl;
+    }
+
+    /**
+     * Gets the local port listening for updates in webhook mode.
+     *
+     * @see #webhookPort
+     * @return The port in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getWebhookPort() {
+        return webhookPort;
+    }
+
+    /**
+     * Sets the local port listening for updates in webhook mode.
+     *
+     * @see #webhookPort
+     * @param webhookPort The new port.
+     * @throws IllegalArgumentException The port is out of range.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setWebhookPort(int webhookPort) {
+        if (webhookPort < 0 || webhookPort > 65535)
+            throw new IllegalArgumentException(
+                "Settings.setWebhookPort: " + webhookPort + " out of range");
+        this.webhookPort = webhookPort;
+    }
+
+    /**
+     * Gets the number of threads handling updates in webhook mode.
+     *
+     * @see #webhookThreads
+     * @return The number of threads.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getWebhookThreads() {
+        return webhookThreads;
+    }
+
+    /**
+     * Sets the number of threads handling updates in webhook mode.
+     *
+     * @see #webhookThreads
+     * @param webhookThreads The new number of threads.
+     * @throws IllegalArgumentException The number is not positive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setWebhookThreads(int webhookThreads) {
+        if (webhookThreads <= 0)
+            throw new IllegalArgumentException(
+                "Settings.setWebhookThreads: " + webhookThreads + " <= 0");
+        this.webhookThreads = webhookThreads;
+    }
+
+    /**
+     * Gets the maximum number of updates waiting for a thread in webhook
+     * mode, beyond which new ones are refused.
+     *
+     * @see #webhookQueue
+     * @return The capacity of the queue.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getWebhookQueue() {
+        return webhookQueue;
+    }
+
+    /**
+     * Sets the maximum number of updates waiting for a thread in webhook
+     * mode, beyond which new ones are refused.
+     *
+     * @see #webhookQueue
+     * @param webhookQueue The new capacity of the queue.
+     * @throws IllegalArgumentException The capacity is not positive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setWebhookQueue(int webhookQueue) {
+        if (webhookQueue <= 0)
+            throw new IllegalArgumentException(
+                "Settings.setWebhookQueue: " + webhookQueue + " <= 0");
+        this.webhookQueue = webhookQueue;
+    }
+
+    /**
+     * Checks whether updates are handled on virtual threads, when the JVM
+     * supports them.
+     *
+     * @see #virtualThreads
+     * @return <code>true</code> if virtual threads are preferred, <code>false
+     * </code> otherwise.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public boolean getVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Sets whether updates are handled on virtual threads, when the JVM
+     * supports them.
+     *
+     * @see #virtualThreads
+     * @param virtualThreads <code>true</code> to prefer virtual threads,
+     * <code>false</code> to always use {@link #dispatchThreads} platform
+     * threads.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Gets the number of platform threads handling updates when virtual
+     * threads are not used.
+     *
+     * @see #dispatchThreads
+     * @return The number of threads.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    /**
+     * Sets the number of platform threads handling updates when virtual
+     * threads are not used.
+     *
+     * @see #dispatchThreads
+     * @param dispatchThreads The new number of threads.
+     * @throws IllegalArgumentException The number is not positive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setDispatchThreads(int dispatchThreads) {
+        if (dispatchThreads <= 0)
+            throw new IllegalArgumentException(
+                "Settings.setDispatchThreads: " + dispatchThreads + " <= 0");
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    /**
+     * Gets the maximum number of updates waiting to be handled, beyond which
+     * new ones wait to be accepted.
+     *
+     * @see #dispatchQueue
+     * @return The maximum number of updates.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getDispatchQueue() {
+        return dispatchQueue;
+    }
+
+    /**
+     * Sets the maximum number of updates waiting to be handled, beyond which
+     * new ones wait to be accepted.
+     *
+     * @see #dispatchQueue
+     * @param dispatchQueue The new maximum number of updates.
+     * @throws IllegalArgumentException The number is not positive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setDispatchQueue(int dispatchQueue) {
+        if (dispatchQueue <= 0)
+            throw new IllegalArgumentException(
+                "Settings.setDispatchQueue: " + dispatchQueue + " <= 0");
+        this.dispatchQueue = dispatchQueue;
+    }
+
+    /**
+     * Gets the maximum number of milliseconds a {@link
+     * io.github.foxyseta.telegrindr.bot.data.Profile} change waits before
+     * being written to the database.
+     *
+     * @see #writeDelay
+     * @return The number of milliseconds.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getWriteDelay() {
+        return writeDelay;
+    }
+
+    /**
+     * Sets the maximum number of milliseconds a {@link
+     * io.github.foxyseta.telegrindr.bot.data.Profile} change waits before
+     * being written to the database.
+     *
+     * @see #writeDelay
+     * @param writeDelay The new number of milliseconds, or <code>0</code> to
+     *                   write every change immediately.
+     * @throws IllegalArgumentException The number is negative.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setWriteDelay(int writeDelay) {
+        if (writeDelay < 0)
+            throw new IllegalArgumentException(
+                "Settings.setWriteDelay: " + writeDelay + " < 0");
+        this.writeDelay = writeDelay;
+    }
+
+    /**
+     * Gets the number of pending {@link
+     * io.github.foxyseta.telegrindr.bot.data.Profile} changes which get
+     * written to the database without waiting any longer.
+     *
+     * @see #writeBatch
+     * @return The number of changes.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getWriteBatch() {
+        return writeBatch;
+    }
+
+    /**
+     * Sets the number of pending {@link
+     * io.github.foxyseta.telegrindr.bot.data.Profile} changes which get
+     * written to the database without waiting any longer.
+     *
+     * @see #writeBatch
+     * @param writeBatch The new number of changes.
+     * @throws IllegalArgumentException The number is not positive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setWriteBatch(int writeBatch) {
+        if (writeBatch <= 0)
+            throw new IllegalArgumentException(
+                "Settings.setWriteBatch: " + writeBatch + " <= 0");
+        this.writeBatch = writeBatch;
+    }
+
+    /**
+     * Gets the maximum number of {@link
+     * io.github.foxyseta.telegrindr.bot.data.Profile} instances kept in
+     * memory for each chat.
+     *
+     * @see #profileCacheSize
+     * @return The number of profiles.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getProfileCacheSize() {
+        return profileCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of {@link
+     * io.github.foxyseta.telegrindr.bot.data.Profile} instances kept in
+     * memory for each chat.
+     *
+     * @see #profileCacheSize
+     * @param profileCacheSize The new number of profiles.
+     * @throws IllegalArgumentException The number is negative.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setProfileCacheSize(int profileCacheSize) {
+        if (profileCacheSize < 0)
+            throw new IllegalArgumentException(
+                "Settings.setProfileCacheSize: " + profileCacheSize + " < 0");
+        this.profileCacheSize = profileCacheSize;
+    }
+
+    /**
+     * Gets the number of seconds the cached {@link
+     * io.github.foxyseta.telegrindr.bot.data.Profile} instances of an idle
+     * chat stay in memory.
+     *
+     * @see #profileCacheIdle
+     * @return The number of seconds.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getProfileCacheIdle() {
+        return profileCacheIdle;
+    }
+
+    /**
+     * Sets the number of seconds the cached {@link
+     * io.github.foxyseta.telegrindr.bot.data.Profile} instances of an idle
+     * chat stay in memory.
+     *
+     * @see #profileCacheIdle
+     * @param profileCacheIdle The new number of seconds, or <code>0</code> to
+     *                         never unload a chat.
+     * @throws IllegalArgumentException The number is negative.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setProfileCacheIdle(int profileCacheIdle) {
+        if (profileCacheIdle < 0)
+            throw new IllegalArgumentException(
+                "Settings.setProfileCacheIdle: " + profileCacheIdle + " < 0");
+        this.profileCacheIdle = profileCacheIdle;
+    }
+
+    /**
+     * Gets the kind of storage the {@link
+     * io.github.foxyseta.telegrindr.bot.data.Profile} instances are kept in.
+     *
+     * @see #profileStore
+     * @return Either {@link #MAPDBSTORE} or {@link #MAPPEDSTORE}.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public String getProfileStore() {
+        return profileStore;
+    }
+
+    /**
+     * Sets the kind of storage the {@link
+     * io.github.foxyseta.telegrindr.bot.data.Profile} instances are kept in.
+     *
+     * @see #profileStore
+     * @param profileStore Either {@link #MAPDBSTORE} or {@link #MAPPEDSTORE}.
+     * @throws IllegalArgumentException The kind of storage is unknown.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setProfileStore(String profileStore) {
+        if (!MAPDBSTORE.equals(profileStore) && !MAPPEDSTORE.equals(profileStore))
+            throw new IllegalArgumentException(
+                "Settings.setProfileStore: unknown store " + profileStore);
+        this.profileStore = profileStore;
+    }
+
+    /**
+     * Gets the directory holding the memory-mapped files of the {@link
+     * #MAPPEDSTORE}.
+     *
+     * @see #profileStoreDirectory
+     * @return The path of the directory.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public String getProfileStoreDirectory() {
+        return profileStoreDirectory;
+    }
+
+    /**
+     * Sets the directory holding the memory-mapped files of the {@link
+     * #MAPPEDSTORE}.
+     *
+     * @see #profileStoreDirectory
+     * @param profileStoreDirectory The new path of the directory.
+     * @throws IllegalArgumentException The path is empty.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setProfileStoreDirectory(String profileStoreDirectory) {
+        if (profileStoreDirectory.isEmpty())
+            throw new IllegalArgumentException(
+                "Settings.setProfileStoreDirectory: empty path");
+        this.profileStoreDirectory = profileStoreDirectory;
+    }
+
+    /**
+     * Gets the directory holding the snapshots of the searchable fields of
+     * each chat, saved on shutdown.
+     *
+     * @see #snapshotDirectory
+     * @return The path of the directory.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public String getSnapshotDirectory() {
+        return snapshotDirectory;
+    }
+
+    /**
+     * Sets the directory holding the snapshots of the searchable fields of
+     * each chat, saved on shutdown.
+     *
+     * @see #snapshotDirectory
+     * @param snapshotDirectory The new path of the directory.
+     * @throws IllegalArgumentException The path is empty.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setSnapshotDirectory(String snapshotDirectory) {
+        if (snapshotDirectory.isEmpty())
+            throw new IllegalArgumentException(
+                "Settings.setSnapshotDirectory: empty path");
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * Gets the number of threads sending the bot's messages.
+     *
+     * @see #outboxThreads
+     * @return The number of threads.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getOutboxThreads() {
+        return outboxThreads;
+    }
+
+    /**
+     * Sets the number of threads sending the bot's messages.
+     *
+     * @see #outboxThreads
+     * @param outboxThreads The new number of threads.
+     * @throws IllegalArgumentException The number is not positive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setOutboxThreads(int outboxThreads) {
+        if (outboxThreads <= 0)
+            throw new IllegalArgumentException(
+                "Settings.setOutboxThreads: " + outboxThreads + " <= 0");
+        this.outboxThreads = outboxThreads;
+    }
+
+    /**
+     * Gets the maximum number of messages the bot sends each second.
+     *
+     * @see #outboxRate
+     * @return The number of messages.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getOutboxRate() {
+        return outboxRate;
+    }
+
+    /**
+     * Sets the maximum number of messages the bot sends each second.
+     *
+     * @see #outboxRate
+     * @param outboxRate The new number of messages.
+     * @throws IllegalArgumentException The number is not positive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setOutboxRate(int outboxRate) {
+        if (outboxRate <= 0)
+            throw new IllegalArgumentException(
+                "Settings.setOutboxRate: " + outboxRate + " <= 0");
+        this.outboxRate = outboxRate;
+    }
+
+    /**
+     * Gets the maximum number of messages the bot sends to a single chat each
+     * minute.
+     *
+     * @see #outboxChatRate
+     * @return The number of messages.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public int getOutboxChatRate() {
+        return outboxChatRate;
+    }
+
+    /**
+     * Sets the maximum number of messages the bot sends to a single chat each
+     * minute.
+     *
+     * @see #outboxChatRate
+     * @param outboxChatRate The new number of messages.
+     * @throws IllegalArgumentException The number is not positive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void setOutboxChatRate(int outboxChatRate) {
+        if (outboxChatRate <= 0)
+            throw new IllegalArgumentException(
+                "Settings.setOutboxChatRate: " + outboxChatRate + " <= 0");
+        this.outboxChatRate = outboxChatRate;
+    }
+
+    /** The minimum size of a chat whose queries are evaluated in parallel. */
+    private int parallelThreshold = DEFAULTPARALLELTHRESHOLD;
+    /** The number of worker threads used by parallel queries. */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    /** The maximum number of query results cached for each chat. */
+    private int cacheSize = DEFAULTCACHESIZE;
+    /** The number of seconds a query result stays cached. */
+    private int cacheTimeToLive = DEFAULTCACHETIMETOLIVE;
+    /** The public URL updates are sent to, or <code>null</code>. */
+    private String webhookUrl;
+    /** The local port listening for updates in webhook mode. */
+    private int webhookPort = DEFAULTWEBHOOKPORT;
+    /** The number of threads handling updates in webhook mode. */
+    private int webhookThreads = 1;
+    /** The maximum number of updates waiting for a thread in webhook mode. */
+    private int webhookQueue = DEFAULTWEBHOOKQUEUE;
+    /** Whether updates are handled on virtual threads, when available. */
+    private boolean virtualThreads = true;
+    /** The number of platform threads handling updates otherwise. */
+    private int dispatchThreads = Runtime.getRuntime().availableProcessors();
+    /** The maximum number of updates waiting to be handled. */
+    private int dispatchQueue = DEFAULTDISPATCHQUEUE;
+    /** The maximum number of milliseconds a profile change stays pending. */
+    private int writeDelay = DEFAULTWRITEDELAY;
+    /** The number of pending profile changes triggering an early write. */
+    private int writeBatch = DEFAULTWRITEBATCH;
+    /** The maximum number of profiles kept in memory for each chat. */
+    private int profileCacheSize = DEFAULTPROFILECACHESIZE;
+    /** The number of seconds the profiles of an idle chat stay in memory. */
+    private int profileCacheIdle = DEFAULTPROFILECACHEIDLE;
+    /** The kind of storage profiles are kept in. */
+    private String profileStore = MAPDBSTORE;
+    /** The directory holding the memory-mapped files of profiles. */
+    private String profileStoreDirectory = DEFAULTPROFILESTOREDIRECTORY;
+    /** The directory holding the snapshots of each chat. */
+    private String snapshotDirectory = DEFAULTSNAPSHOTDIRECTORY;
+    /** The number of threads sending messages. */
+    private int outboxThreads = DEFAULTOUTBOXTHREADS;
+    /** The maximum number of messages sent each second. */
+    private int outboxRate = DEFAULTOUTBOXRATE;
+    /** The maximum number of messages sent to a single chat each minute. */
+    private int outboxChatRate = DEFAULTOUTBOXCHATRATE;
+
+}
@@ -0,0 +1,182 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import org.telegram.abilitybots.api.db.DBContext;
+import org.telegram.abilitybots.api.db.Var;
+
+import io.github.foxyseta.telegrindr.bot.data.ChatSnapshot;
+import io.github.foxyseta.telegrindr.bot.data.ChatStatistics;
+
+/**
+ * A <code>SnapshotStore</code> persists the {@link ChatSnapshot} of each chat
+ * between runs, so that the first queries after a restart do not have to
+ * deserialize every {@link io.github.foxyseta.telegrindr.bot.data.Profile} of
+ * their chat. Snapshots are memory-mapped and read lazily, on the first
+ * access to their chat.
+ * <p>
+ * Snapshots are only trusted if the database says the previous run {@linkplain
+ * #markClean ended cleanly}, after saving them: the mark is cleared as soon
+ * as the store is opened, so that a crash invalidates every snapshot. Each
+ * snapshot also carries an identifier of its database, so that snapshots
+ * copied from another database are ignored.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class SnapshotStore {
+
+    /** The extension of the snapshot of each chat. */
+    final public static String EXTENSION = ".snapshot";
+
+    /**
+     * Opens a {@link SnapshotStore}, deleting its snapshots if the previous
+     * run did not end cleanly.
+     *
+     * @param directory The directory holding the snapshots, created if
+     *                  missing.
+     * @param db        The database the snapshots are validated against.
+     * @throws IOException The directory could not be created or cleared.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public SnapshotStore(Path directory, DBContext db) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.db = db;
+        final Var<Long> id = db.getVar(SNAPSHOTSID);
+        if (id.get() == null)
+            id.set(new Random().nextLong());
+        this.id = id.get();
+        final Var<Boolean> clean = db.getVar(SNAPSHOTSCLEAN);
+        wasClean = Boolean.TRUE.equals(clean.get());
+        clean.set(false);
+        db.commit();
+        if (!wasClean) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+                for (Path file : files)
+                    Files.delete(file);
+            }
+            logger.info("stale snapshots discarded");
+        }
+    }
+
+    /**
+     * Tells whether the previous run ended cleanly, so that whatever it saved
+     * on closing can be trusted.
+     *
+     * @return <code>true</code> if the previous run ended cleanly, <code>false
+     *         </code> otherwise.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public boolean wasClean() {
+        return wasClean;
+    }
+
+    /**
+     * Reads the snapshot of a chat.
+     *
+     * @param chatId     The identifier of the chat.
+     * @param statistics The {@link ChatStatistics} of the chat.
+     * @return The {@link ChatSnapshot} in question, or <code>null</code> if
+     *         there is no valid one.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public ChatSnapshot load(Long chatId, ChatStatistics statistics) {
+        final Path file = file(chatId);
+        if (!Files.exists(file))
+            return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER || buffer.getInt() != MAGIC || buffer.getLong() != id)
+                throw new IOException("SnapshotStore.load: " + file + " belongs to another database");
+            return ChatSnapshot.read(buffer, statistics);
+        } catch (IOException e) {
+            logger.warning("snapshot of chat " + chatId + " discarded: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of a chat, replacing the previous one atomically.
+     *
+     * @param chatId   The identifier of the chat.
+     * @param snapshot The {@link ChatSnapshot} in question.
+     * @throws IOException The snapshot could not be written.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void save(Long chatId, ChatSnapshot snapshot) throws IOException {
+        final Path file = file(chatId), temporary = directory.resolve(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(id);
+            snapshot.write(out);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Records in the database that every snapshot is up to date. Must be
+     * called after the last change to the database.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void markClean() {
+        db.<Boolean>getVar(SNAPSHOTSCLEAN).set(true);
+        db.commit();
+    }
+
+    /** Identifies the snapshots written by this class. */
+    final private static int MAGIC = 0x54475353;
+    /** The size of the header of a snapshot, in bytes. */
+    final private static int HEADER = Integer.BYTES + Long.BYTES;
+    /** The name of the variable storing the identifier of the database. */
+    final private static String SNAPSHOTSID = "SnapshotsId";
+    /** The name of the variable telling whether the snapshots are valid. */
+    final private static String SNAPSHOTSCLEAN = "SnapshotsClean";
+    /** Logs notices regarding the snapshots. */
+    final private static Logger logger = Logger.getLogger(SnapshotStore.class.getName());
+
+    /** The directory holding the snapshots. */
+    final private Path directory;
+    /** The database the snapshots are validated against. */
+    final private DBContext db;
+    /** The identifier of the database. */
+    final private long id;
+    /** Whether the previous run ended cleanly. */
+    final private boolean wasClean;
+
+    /**
+     * Gets the path of the snapshot of a chat.
+     *
+     * @param chatId The identifier of the chat.
+     * @return The path in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Path file(Long chatId) {
+        return directory.resolve(chatId + EXTENSION);
+    }
+
+}
@@ -1,29 +1,58 @@
 package io.github.foxyseta.telegrindr.bot;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 import org.telegram.abilitybots.api.bot.AbilityBot;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.telegram.abilitybots.api.db.MapDBContext;
 import org.telegram.abilitybots.api.objects.Ability;
 import org.telegram.abilitybots.api.objects.Flag;
 import org.telegram.abilitybots.api.objects.Locality;
 import org.telegram.abilitybots.api.objects.MessageContext;
 import org.telegram.abilitybots.api.objects.Privacy;
+import org.telegram.abilitybots.api.objects.Reply;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendLocation;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Location;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.User;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 
+import io.github.foxyseta.telegrindr.bot.data.ArgumentParser;
+import io.github.foxyseta.telegrindr.bot.data.ChatSnapshot;
+import io.github.foxyseta.telegrindr.bot.data.ChatStatistics;
+import io.github.foxyseta.telegrindr.bot.data.Cursor;
 import io.github.foxyseta.telegrindr.bot.data.Filter;
 import io.github.foxyseta.telegrindr.bot.data.Profile;
+import io.github.foxyseta.telegrindr.bot.data.QueryCache;
+import io.github.foxyseta.telegrindr.bot.data.QueryPlan;
 import io.github.foxyseta.telegrindr.bot.data.Stat;
 
 /**
@@ -48,8 +77,81 @@ public class TeleGrindr extends AbilityBot {
      * @since 1.0
      */
     public TeleGrindr(String botToken, String username, int creatorId) {
-        super(botToken, username);
+        this(botToken, username, creatorId, new Settings());
+    }
+
+    /**
+     * Creates a new instance of <code>Telegrindr</code> with custom {@link
+     * Settings}.
+     * 
+     * @param botToken  Bot token sent by FatherBot.
+     * @param username  Username communicated to FatherBot.
+     * @param creatorId Your telegram account identifier.
+     * @param settings  The tunable parameters of the bot.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public TeleGrindr(String botToken, String username, int creatorId, Settings settings) {
+        this(botToken, username, creatorId, settings, new DefaultBotOptions());
+    }
+
+    /**
+     * Creates a new instance of <code>Telegrindr</code> with custom {@link
+     * Settings} and {@link DefaultBotOptions} (e.g. pointing to another Bot
+     * API server).
+     * 
+     * @param botToken  Bot token sent by FatherBot.
+     * @param username  Username communicated to FatherBot.
+     * @param creatorId Your telegram account identifier.
+     * @param settings  The tunable parameters of the bot.
+     * @param options   The options of the underlying bot.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public TeleGrindr(String botToken, String username, int creatorId, Settings settings,
+            DefaultBotOptions options) {
+        this(botToken, username, creatorId, settings, options, database(username));
+    }
+
+    /**
+     * Creates a new instance of <code>Telegrindr</code> on top of an open
+     * database.
+     * 
+     * @param botToken  Bot token sent by FatherBot.
+     * @param username  Username communicated to FatherBot.
+     * @param creatorId Your telegram account identifier.
+     * @param settings  The tunable parameters of the bot.
+     * @param options   The options of the underlying bot.
+     * @param mapdb     The database of the bot.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private TeleGrindr(String botToken, String username, int creatorId, Settings settings, DefaultBotOptions options,
+            DB mapdb) {
+        super(botToken, username, context(mapdb, settings), options);
+        this.mapdb = mapdb;
         cId = creatorId;
+        parallelThreshold = settings.getParallelThreshold();
+        pool = new ForkJoinPool(settings.getParallelism());
+        cacheSize = settings.getCacheSize();
+        cacheTimeToLive = settings.getCacheTimeToLive() * 1000L;
+        dispatcher = new Dispatcher(settings);
+        outbox = new Outbox(this, settings);
+        store = store(settings);
+        try {
+            snapshotStore = new SnapshotStore(Paths.get(settings.getSnapshotDirectory()), new MapDBContext(mapdb));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!snapshotStore.wasClean())
+            discardStatistics();
+        writes = new WriteBehind(store, settings);
+        profileCache = new ProfileCache(writes, settings);
+        helpText = helpText(username);
+        backfillUsernames();
         logger.info("Bot " + username + " initialized.");
     }
 
@@ -67,6 +169,54 @@ public class TeleGrindr extends AbilityBot {
         return cId;
     }
 
+    /**
+     * Hands an update to the {@link Dispatcher}, so that the abilities run
+     * concurrently across chats but in order within each chat. The usage
+     * statistics {@link AbilityBot} keeps for each ability are approximate,
+     * though: it reads, increments and writes them back without any lock, so
+     * updates of different chats using the same ability at once may count as
+     * one.
+     * 
+     * @param update The update in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void onUpdateReceived(Update update) {
+        dispatcher.dispatch(chatOf(update), () -> super.onUpdateReceived(update));
+    }
+
+    /**
+     * Waits for the pending updates to be handled and written to the database,
+     * then for their answers to be sent, before closing the bot and its
+     * database. Later calls do nothing.
+     * 
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    public void onClosing() {
+        if (closed.getAndSet(true))
+            return;
+        dispatcher.shutdown();
+        profileCache.close();
+        writes.close();
+        // stale statistics must not be marked as clean
+        if (saveStatistics())
+            saveSnapshots();
+        // a rate-limited backlog may take long, so everything is saved first
+        outbox.close();
+        super.onClosing();
+        try {
+            store.close();
+            db.close();
+        } catch (IOException e) {
+            logger.warning("database not closed: " + e.getMessage());
+        }
+    }
+
     /**
      * Gets the ability triggered by <code>/start</code>.
      * 
@@ -132,6 +282,59 @@ public class TeleGrindr extends AbilityBot {
                 .privacy(Privacy.PUBLIC).action(whoisAction).enableStats().build();
     }
 
+    /**
+     * Gets the ability triggered by <code>/cachestats</code>
+     * 
+     * @return The ability triggered by <code>/cachestats</code>.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public Ability cachestats() {
+        return Ability.builder().name("cachestats").info("reports the query and profile cache usage").input(0)
+                .locality(Locality.ALL).privacy(Privacy.CREATOR).action(cachestatsAction).build();
+    }
+
+    /**
+     * Gets the ability triggered by <code>/chatstats</code>
+     * 
+     * @return The ability triggered by <code>/chatstats</code>.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public Ability chatstats() {
+        return Ability.builder().name("chatstats").info("summarizes the profiles of the chat").input(0)
+                .locality(Locality.GROUP).privacy(Privacy.CREATOR).action(chatstatsAction).build();
+    }
+
+    /**
+     * Gets the ability triggered by <code>/explain</code>
+     * 
+     * @return The ability triggered by <code>/explain</code>.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public Ability explain() {
+        return Ability.builder().name("explain").info("shows how a /whois filter is evaluated").input(0)
+                .locality(Locality.GROUP).privacy(Privacy.CREATOR).action(explainAction).build();
+    }
+
+    /**
+     * Gets the reply triggered by the "next page" button of a <code>/whois
+     * </code> listing.
+     * 
+     * @return The reply triggered by the button in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public Reply nextPage() {
+        return Reply.of(nextPageReply, Flag.CALLBACK_QUERY,
+                upd -> NEXTPAGEPATTERN.matcher(upd.getCallbackQuery().getData()).matches());
+    }
+
     /**
      * Sends a message containing a single {@link Profile}.
      * 
@@ -142,18 +345,14 @@ public class TeleGrindr extends AbilityBot {
      * @since 1.0
      */
     public void print(Profile p, Long chatId) {
-        silent.sendMd(p.toString(), chatId);
+        outbox.sendMd(chatId, p.toString());
         if (p.location != null) {
             SendLocation location = new SendLocation();
             location.setChatId(chatId.toString());
             location.setHorizontalAccuracy(p.location.getHorizontalAccuracy());
             location.setLatitude(p.location.getLatitude());
             location.setLongitude(p.location.getLongitude());
-            try {
-                execute(location);
-            } catch (TelegramApiException e) {
-                e.printStackTrace();
-            }
+            outbox.execute(chatId, location);
         }
     }
 
@@ -167,79 +366,682 @@ public class TeleGrindr extends AbilityBot {
      * @since 1.0
      */
     public void print(Profile[] profiles, Long chatId) {
-        silent.send(String.format(PEOPLECOUNTER, profiles.length) + Stream.of(profiles).map(p -> p.toShortString())
-                .collect(Collectors.joining(String.format("%n"), String.format("%n"), "")), chatId);
+        outbox.send(chatId, list(profiles));
+    }
+
+    /**
+     * Counts the <code>/whois</code> queries served by the query cache so far.
+     * 
+     * @return The number of cache hits across every chat.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public long cacheHits() {
+        return caches.values().stream().mapToLong(QueryCache::getHits).sum();
+    }
+
+    /**
+     * Counts the <code>/whois</code> queries which had to be evaluated so far.
+     * 
+     * @return The number of cache misses across every chat.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public long cacheMisses() {
+        return caches.values().stream().mapToLong(QueryCache::getMisses).sum();
     }
 
     /** The creator's unique identifier. */
     private int cId;
+    /** The database of the bot, also wrapped by {@link #db}. */
+    private DB mapdb;
+    /** The minimum size of a chat whose queries are evaluated in parallel. */
+    private int parallelThreshold;
+    /** Evaluates the queries of the largest chats. */
+    private ForkJoinPool pool;
+    /** Runs the updates, one chat at a time. */
+    private Dispatcher dispatcher;
+    /** Sends the bot's messages in the background. */
+    private Outbox outbox;
+    /** Persists the {@link Profile} instances. */
+    private ProfileStore store;
+    /** Persists the {@link ChatSnapshot} instances between runs. */
+    private SnapshotStore snapshotStore;
+    /** Buffers the {@link Profile} instances to be written to the database. */
+    private WriteBehind writes;
+    /** Keeps the recently used {@link Profile} instances in memory. */
+    private ProfileCache profileCache;
+    /** The message sent on <code>/help</code>, rendered once. */
+    private String helpText;
+    /** Whether {@link #onClosing} has been called. */
+    final private AtomicBoolean closed = new AtomicBoolean();
+    /** The maximum number of query results cached for each chat. */
+    private int cacheSize;
+    /** The number of milliseconds a query result stays cached. */
+    private long cacheTimeToLive;
     /** The prefix used when tagging a certain user. */
     final private static char TAGPREFIX = '@';
-    /** The prefix used when removing a tag from your own {@link Profile}. */
-    final private static String REMOVETAGARGUMENTPREFIX = "-";
-    /** The regex for any tag action to be applied to a {@link Profile}. */
-    final private static String TAGARGUMENTREGEX = "([+-]?)#([0-9A-Za-z]+).*";
-    /** The regex representing a {@link Stat} and its value. */
-    final private static String STATARGUMENTREGEX = "(\\d+)(\\w+)";
-    /** The name format for {@link Profile} tables. */
-    final private static String PROFILESTABLE = "Profiles_%d";
+    /** The name format for the tables mapping usernames to user identifiers. */
+    final private static String USERNAMESTABLE = "Usernames_%d";
+    /** The name of the set of chats whose usernames have been indexed. */
+    final private static String INDEXEDCHATS = "UsernameIndexedChats";
     /** The message format to be used on unrecognized arguments. */
     final private static String UNKNOWNARGUMENT = "%s❓";
     /** The label representing the concept of a {@link Location}. */
     final private static String LOCATIONLABEL = "📍";
+    /** The message format used to report the query cache usage. */
+    final private static String CACHESTATS = "🔍 ✅ %d ❌ %d%n👤 ✅ %d ❌ %d%n💬 × %d 👤 × %d ≈ %d KiB";
+    /** The message format used to summarize the profiles of a chat. */
+    final private static String CHATSTATS = "👤 × %d 📍 × %d (%d ▦, ≤ %d) ≈ %d KiB";
+    /** The message format used to summarize the values of a {@link Stat}. */
+    final private static String STATSUMMARY = "%s × %d: %d ≤ %d ≤ %d";
+    /** The maximum number of tags listed by <code>/chatstats</code>. */
+    final private static int TOPTAGS = 10;
+    /** The message format used to report the time taken by an explained query. */
+    final private static String EXPLAINTIME = "%n⏱ %.3f ms";
     /** The format of any counter used for {@link Profile} instances. */
-    final private static String PEOPLECOUNTER = "👤 × %d";
+    final private static String PEOPLECOUNTER = "👤 × ";
+    /** The line separator of the messages. */
+    final private static String LINESEPARATOR = System.lineSeparator();
+    /** The capacity reserved for each line of a listing. */
+    final private static int LISTLINECAPACITY = 40;
+    /** The message sent on <code>/start</code>. */
+    final private static String STARTTEXT = String.format("*Hi!* 👋%nThe name's _TeleGrindr_ and I can help you get "
+            + "in contact with other users in the same Telegram groups as you. If you do not know where to start, just "
+            + "ask me for /help.");
+    /** The maximum number of {@link Profile} instances listed in a single message. */
+    final private static int PAGESIZE = 50;
+    /** The maximum number of {@link Cursor} instances kept at any time. */
+    final private static int MAXCURSORS = 1000;
+    /** The number of locks guarding the {@link Profile} instances. */
+    final private static int LOCKSTRIPES = 64;
+    /** The label of the "next page" button. */
+    final private static String NEXTPAGELABEL = "➡️";
+    /** The callback data format of the "next page" button. */
+    final private static String NEXTPAGEDATA = "whois:%d";
+    /** The regex matching the callback data of any "next page" button. */
+    final private static String NEXTPAGEREGEX = "whois:(\\d+)";
     /**
-     * The {@link Pattern} generated from the {@linkplain #TAGARGUMENTREGEX tag
-     * actions' regex}.
+     * The {@link Pattern} generated from the {@linkplain #NEXTPAGEREGEX "next
+     * page" buttons' regex}.
      */
-    final private static Pattern TAGARGUMENTPATTERN = Pattern.compile(TAGARGUMENTREGEX);
-    /**
-     * The {@link Pattern} generated from the {@linkplain #STATARGUMENTREGEX
-     * stat-value pairs' regex}.
-     */
-    final private static Pattern STATARGUMENTPATTERN = Pattern.compile(STATARGUMENTREGEX);
+    final private static Pattern NEXTPAGEPATTERN = Pattern.compile(NEXTPAGEREGEX);
 
     /** Logs notices regarding the bot's execution. */
     final private static Logger logger = Logger.getLogger(TeleGrindr.class.getName());
 
+    /** The {@link ChatSnapshot} of each chat, built on first use. */
+    final private Map<Long, ChatSnapshot> snapshots = new ConcurrentHashMap<Long, ChatSnapshot>();
+
+    /** The {@link ChatStatistics} of each chat, read or built on first use. */
+    final private Map<Long, ChatStatistics> statistics = new ConcurrentHashMap<Long, ChatStatistics>();
+
+    /**
+     * Guards the read-modify-write cycles of {@link Profile} instances, each
+     * of them being guarded by the {@linkplain #lock stripe} its chat and user
+     * hash to.
+     */
+    final private Object[] locks = IntStream.range(0, LOCKSTRIPES).mapToObj(i -> new Object()).toArray();
+
+    /** The {@link QueryCache} of each chat, created on first use. */
+    final private Map<Long, QueryCache<Listing>> caches = new ConcurrentHashMap<Long, QueryCache<Listing>>();
+
+    /**
+     * A <code>Listing</code> is the outcome of a <code>/whois</code> query as
+     * kept by its {@link QueryCache}.
+     * 
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static class Listing {
+
+        /**
+         * Instantiates a new {@link Listing}.
+         * 
+         * @param firstPage See {@link #firstPage}.
+         * @param next      See {@link #next}.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        Listing(int[] firstPage, Cursor next) {
+            this.firstPage = firstPage;
+            this.next = next;
+        }
+
+        /** The identifiers of the users on the first page. */
+        final private int[] firstPage;
+        /** The {@link Cursor} pointing to the second page, never moved. */
+        final private Cursor next;
+
+    }
+
+    /**
+     * A <code>DeferredContext</code> ignores the commits requested through it,
+     * leaving them to whoever commits its database directly.
+     * 
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static class DeferredContext extends MapDBContext {
+
+        /**
+         * Instantiates a new {@link DeferredContext}.
+         * 
+         * @param mapdb The database in question.
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        DeferredContext(DB mapdb) {
+            super(mapdb);
+        }
+
+        /**
+         * Does nothing, since the database is committed by the {@link
+         * WriteBehind}.
+         * 
+         * @author FoxySeta
+         * @version 1.0
+         * @since 1.0
+         */
+        @Override
+        public void commit() {
+        }
+
+    }
+
+    /** Generates the identifiers of new {@link Cursor} instances. */
+    final private AtomicLong cursorIds = new AtomicLong();
+
+    /**
+     * The {@link Cursor} of every <code>/whois</code> listing which has more
+     * pages, forgetting the least recently used ones.
+     */
+    final private Map<Long, Cursor> cursors = Collections.synchronizedMap(new LinkedHashMap<Long, Cursor>(16, 0.75f, true) {
+
+        /** This {@link java.io.Serializable}'s version number. */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Cursor> eldest) {
+            return size() > MAXCURSORS;
+        }
+
+    });
+
+    /**
+     * Opens the database of a bot. Unlike the default one, it is not closed
+     * by the JVM on shutdown, so that pending writes can still be flushed by
+     * {@link #onClosing}.
+     * 
+     * @param username The username of the bot, naming the database file.
+     * @return The database in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static DB database(String username) {
+        return DBMaker.fileDB(username).fileMmapEnableIfSupported().transactionEnable().make();
+    }
+
+    /**
+     * Wraps the database of a bot for {@link AbilityBot}, which commits it
+     * after every update. When the {@link Profile} instances are stored in the
+     * same database and written behind, those commits are {@linkplain
+     * DeferredContext deferred}: the {@link WriteBehind} commits the database
+     * once per batch instead, so that a batch is never committed halfway and
+     * the changes made by {@link AbilityBot} are committed along with it.
+     * 
+     * @param mapdb    The database in question.
+     * @param settings The {@link Settings} in question.
+     * @return The bot's view of the database.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static MapDBContext context(DB mapdb, Settings settings) {
+        if (Settings.MAPPEDSTORE.equals(settings.getProfileStore()) || settings.getWriteDelay() == 0)
+            return new MapDBContext(mapdb);
+        return new DeferredContext(mapdb);
+    }
+
+    /**
+     * Opens the {@link ProfileStore} chosen by some {@link Settings}.
+     * 
+     * @param settings The {@link Settings} in question.
+     * @return The {@link ProfileStore} in question.
+     * @throws UncheckedIOException The {@link ProfileStore} could not be
+     *                              opened.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private ProfileStore store(Settings settings) {
+        if (!Settings.MAPPEDSTORE.equals(settings.getProfileStore()))
+            return new MapDBProfileStore(mapdb, db);
+        try {
+            return new MappedProfileStore(Paths.get(settings.getProfileStoreDirectory()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finds the chat an update belongs to.
+     * 
+     * @param update The update in question.
+     * @return The identifier of the chat, or of the sender if there is no
+     *         chat, or <code>0</code> if there is neither.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static long chatOf(Update update) {
+        if (update.hasMessage())
+            return update.getMessage().getChatId();
+        if (update.hasEditedMessage())
+            return update.getEditedMessage().getChatId();
+        if (update.hasCallbackQuery()) {
+            final CallbackQuery query = update.getCallbackQuery();
+            if (query.getMessage() != null)
+                return query.getMessage().getChatId();
+            if (query.getFrom() != null)
+                return query.getFrom().getId();
+        }
+        return 0;
+    }
+
+    /**
+     * Normalizes a username so that it can be used as a key of the
+     * {@linkplain #USERNAMESTABLE usernames' tables}.
+     * 
+     * @param username The username, with or without its {@link #TAGPREFIX}.
+     * @return The case-folded username.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static String usernameKey(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the table mapping the usernames of a chat to their user
+     * identifiers, building it from the database if needed.
+     * 
+     * @param chatId The chat whose usernames are indexed.
+     * @return The table in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Map<String, Integer> usernames(Long chatId) {
+        final Map<String, Integer> usernames = db.getMap(String.format(USERNAMESTABLE, chatId));
+        final Set<Long> indexedChats = db.getSet(INDEXEDCHATS);
+        if (!indexedChats.contains(chatId)) {
+            usernames.clear();
+            store.forEach(chatId, p -> {
+                if (p.user.getUserName() != null)
+                    usernames.put(usernameKey(p.user.getUserName()), p.user.getId());
+            });
+            indexedChats.add(chatId);
+            logger.info("username index built for chat " + chatId);
+        }
+        return usernames;
+    }
+
+    /**
+     * Keeps the {@linkplain #usernames usernames' table} of a chat in sync
+     * after a {@link User} has been refreshed.
+     * 
+     * @param chatId  The chat where the {@link User} has a {@link Profile}.
+     * @param oldUser The out-of-date {@link User} or <code>null</code>.
+     * @param newUser The up-to-date {@link User}.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void indexUsername(Long chatId, User oldUser, User newUser) {
+        final String oldName = oldUser == null ? null : oldUser.getUserName(),
+                newName = newUser.getUserName();
+        if (oldName != null && oldName.equals(newName))
+            return;
+        final Map<String, Integer> usernames = usernames(chatId);
+        if (oldName != null)
+            usernames.remove(usernameKey(oldName), newUser.getId());
+        if (newName != null)
+            usernames.put(usernameKey(newName), newUser.getId());
+    }
+
+    /**
+     * Builds the {@linkplain #usernames usernames' table} of every chat found
+     * in the database which has not been indexed yet.
+     * 
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void backfillUsernames() {
+        for (Long chat : store.chats())
+            usernames(chat);
+        mapdb.commit();
+    }
+
+    /**
+     * Gets the {@link ChatSnapshot} of a chat, reading it from the {@link
+     * SnapshotStore} or building it from the database if needed. The snapshot
+     * plans its queries on the {@linkplain #statistics statistics} of the chat,
+     * which {@link #setProfile} keeps up to date.
+     * 
+     * @param chatId The chat whose {@link Profile} instances are searched.
+     * @return The {@link ChatSnapshot} in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private ChatSnapshot snapshot(Long chatId) {
+        return snapshots.computeIfAbsent(chatId, chat -> {
+            final ChatSnapshot saved = snapshotStore.load(chat, statistics(chat));
+            if (saved != null) {
+                logger.info("snapshot loaded for chat " + chat);
+                return saved;
+            }
+            final ChatSnapshot snapshot = new ChatSnapshot(statistics(chat));
+            store.forEach(chat, snapshot::update);
+            logger.info("snapshot built for chat " + chat);
+            return snapshot;
+        });
+    }
+
     /**
-     * Retrieves a {@link Profile} from the database.
+     * Saves every {@link ChatSnapshot} used during this run, then marks the
+     * {@link SnapshotStore} as up to date if none of them failed.
+     * 
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void saveSnapshots() {
+        try {
+            for (Map.Entry<Long, ChatSnapshot> snapshot : snapshots.entrySet())
+                snapshotStore.save(snapshot.getKey(), snapshot.getValue());
+            snapshotStore.markClean();
+            logger.info(snapshots.size() + " snapshots saved");
+        } catch (IOException e) {
+            logger.warning("snapshots not saved: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the {@link ChatStatistics} of a chat, reading them from the {@link
+     * ProfileStore} or building them from the database if needed.
+     * 
+     * @param chatId The chat whose {@link Profile} instances are summarized.
+     * @return The {@link ChatStatistics} in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private ChatStatistics statistics(Long chatId) {
+        return statistics.computeIfAbsent(chatId, chat -> {
+            final ChatStatistics saved = store.getStatistics(chat);
+            if (saved != null)
+                return saved;
+            final ChatStatistics built = new ChatStatistics();
+            store.forEach(chat, profile -> built.update(null, profile));
+            logger.info("statistics built for chat " + chat);
+            return built;
+        });
+    }
+
+    /**
+     * Writes the {@link ChatStatistics} of every chat used during this run to
+     * the {@link ProfileStore}, then commits. Must be called after the last
+     * {@link Profile} has been written.
+     * 
+     * @return <code>true</code> if every {@link ChatStatistics} was saved,
+     *         <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private boolean saveStatistics() {
+        try {
+            for (Map.Entry<Long, ChatStatistics> chat : statistics.entrySet())
+                store.putStatistics(chat.getKey(), chat.getValue());
+            store.commit();
+            logger.info(statistics.size() + " statistics saved");
+            return true;
+        } catch (UncheckedIOException e) {
+            logger.warning("statistics not saved: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Removes the {@link ChatStatistics} of every chat from the {@link
+     * ProfileStore}, since the previous run did not end cleanly and they may
+     * be out of date. They are rebuilt on first use.
+     * 
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void discardStatistics() {
+        for (Long chat : store.chats())
+            store.putStatistics(chat, null);
+        store.commit();
+        logger.info("stale statistics discarded");
+    }
+
+    /**
+     * Gets the {@link QueryCache} of a chat.
+     * 
+     * @param chatId The chat whose queries are cached.
+     * @return The {@link QueryCache} in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private QueryCache<Listing> cache(Long chatId) {
+        return caches.computeIfAbsent(chatId, chat -> new QueryCache<Listing>(cacheSize, cacheTimeToLive));
+    }
+
+    /**
+     * Gets the lock guarding a {@link Profile}.
      * 
      * @param chatId The chat where the {@link Profile} was set up.
-     * @param user   The {@link User} who set up the {@link Profile}.
-     * @return The {@Profile} in question.
-     */
-    private Profile getProfile(Long chatId, User user) {
-        final Map<Integer, Profile> profiles = db.getMap(String.format(PROFILESTABLE, chatId));
-        final Integer userId = user.getId();
-        if (profiles.containsKey(userId)) {
-            final Profile oldProfile = profiles.get(userId);
-            oldProfile.user = user;
-            return oldProfile;
+     * @param userId The user who set up the {@link Profile}.
+     * @return The lock in question, shared with other profiles.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Object lock(Long chatId, Integer userId) {
+        return locks[Math.floorMod(Objects.hash(chatId, userId), LOCKSTRIPES)];
+    }
+
+    /**
+     * Retrieves a {@link Profile} from the database without ever writing to
+     * it.
+     * 
+     * @param chatId The chat where the {@link Profile} was set up.
+     * @param userId The user who set up the {@link Profile}.
+     * @return The {@link Profile} in question or <code>null</code>. It may be
+     *         shared, so it must not be modified.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Profile findProfile(Long chatId, Integer userId) {
+        return profileCache.get(chatId, userId);
+    }
+
+    /**
+     * Atomically updates (or adds if absent) a {@link Profile} in the
+     * database. Concurrent updates to the same {@link Profile} are applied one
+     * after the other, so that none of them gets lost, while updates to other
+     * profiles are mostly left running in parallel. Nothing is written if the
+     * {@link Profile} exists and is left unchanged.
+     * 
+     * @param chatId   The chat where the {@link Profile} was set up.
+     * @param user     The up-to-date {@link User} who set up the {@link
+     *                 Profile}.
+     * @param mutation Changes the current {@link Profile}. It is run while
+     *                 holding a lock, so it should not block.
+     * @return The up-to-date {@link Profile}, owned by the caller.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Profile updateProfile(Long chatId, User user, Consumer<Profile> mutation) {
+        synchronized (lock(chatId, user.getId())) {
+            final Profile oldProfile = findProfile(chatId, user.getId());
+            // the stored Profile may be shared with readers, so change a copy
+            final Profile profile = oldProfile == null ? new Profile(user) : new Profile(oldProfile);
+            profile.user = user;
+            mutation.accept(profile);
+            if (!profile.equals(oldProfile))
+                setProfile(chatId, profile, oldProfile);
+            return profile;
         }
-        final Profile newProfile = new Profile(user);
-        profiles.put(user.getId(), newProfile);
-        return newProfile;
     }
 
     /**
-     * Updates (or adds if absent) a {@link Profile} in the database.
+     * Updates (or adds if absent) a {@link Profile} in the database. Must only
+     * be called by {@link #updateProfile}, while holding the {@linkplain #lock
+     * lock} of the {@link Profile}.
+     * 
+     * @param chatId     The chat where the {@link Profile} was set up.
+     * @param profile    The up-to-date {@link Profile}, not to be modified
+     *                   afterwards.
+     * @param oldProfile The out-of-date {@link Profile} or <code>null</code>.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void setProfile(Long chatId, Profile profile, Profile oldProfile) {
+        statistics(chatId).update(oldProfile, profile);
+        snapshot(chatId).update(profile);
+        final QueryCache<Listing> cache = caches.get(chatId);
+        if (cache != null)
+            cache.invalidate();
+        profileCache.put(chatId, profile);
+        indexUsername(chatId, oldProfile == null ? null : oldProfile.user, profile.user);
+    }
+
+    /**
+     * Lists a sequence of {@link Profile} instances, one per line.
+     * 
+     * @param profiles The profiles to be listed.
+     * @return The text of the list.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static String list(Profile[] profiles) {
+        final StringBuilder res = new StringBuilder(PEOPLECOUNTER.length() + profiles.length * LISTLINECAPACITY);
+        res.append(PEOPLECOUNTER).append(profiles.length);
+        for (Profile p : profiles)
+            res.append(LINESEPARATOR).append(p.toShortString());
+        return res.toString();
+    }
+
+    /**
+     * Renders the message sent on <code>/help</code>.
      * 
-     * @param chatId  The chat where the {@link Profile} was set up.
-     * @param profile The up-to-date {@link Profile}.
-     * @return The out-of-date {@link Profile} or <code>null</code>.
+     * @param username The bot's username.
+     * @return The message in question, in Markdown.
      * @author FoxySeta
      * @version 1.0
      * @since 1.0
      */
-    private Profile setProfile(Long chatId, Profile profile) {
-        return db.<Integer, Profile>getMap(String.format(PROFILESTABLE, chatId)).put(profile.user.getId(), profile);
+    private static String helpText(String username) {
+        return String.format("::= = is%n" + "| = or%n" + "\\[ ] = once or none%n" + "{ } = zero or more times%n%n"
+                + "*👤 SETTING UP YOUR PROFILE%n" + "/iam {argument}*%n%n"
+                + "_argument_ ::= _stat_|_property_%n" + "_stat_ ::= _integer_(yo|cm|kg)%n"
+                + "_property_ ::= \\[+|-]#_hashtag_%n%n"
+                + "ex. `/iam 29yo -#jock #nerd 175cm` sets your age and height. "
+                + "It also replaces one of your tags with another.%n" + "📍 You can also send me your location.%n%n"
+                + "*🔍 SHOWING SOMEONE'S PROFILE%n" + "/howis @%s*%n%n"
+                + "*👥 LISTING PROFILES%n" + "/whois {filter}*%n%n"
+                + "_filter_ ::= _range_|_property_|_limit_%n"
+                + "_range_ ::= \\[_integer_]\\[,]\\[_integer_](yo|cm|kg|km)%n"
+                + "_property_ ::= \\[+|-]#_hashtag_%n" + "_limit_ ::= top_integer_%n%n"
+                + "ex. `/whois 18,29yo #single ,10km -#sporty` selects profiles "
+                + "within the specified ranges and (not) having the specified tags.%n"
+                + "ex. `/whois top10 #single` selects the 10 nearest ones.%n" + "➡️ Long lists come in pages.",
+                username);
+    }
+
+    /**
+     * Reads the next page of a <code>/whois</code> listing.
+     * 
+     * @param chatId The chat where the listing was requested.
+     * @param cursor The {@link Cursor} of the listing.
+     * @return The identifiers of the users on the page.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private int[] page(Long chatId, Cursor cursor) {
+        final ChatSnapshot snapshot = snapshot(chatId);
+        return snapshot.page(cursor, PAGESIZE, snapshot.size() >= parallelThreshold ? pool : null);
+    }
+
+    /**
+     * Retrieves many {@link Profile} instances from the database.
+     * 
+     * @param chatId  The chat where the {@link Profile} instances were set up.
+     * @param userIds The identifiers of their users.
+     * @return The {@link Profile} instances in question, in the same order.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Profile[] profiles(Long chatId, int[] userIds) {
+        return IntStream.of(userIds).mapToObj(userId -> findProfile(chatId, userId)).filter(Objects::nonNull)
+                .toArray(Profile[]::new);
+    }
+
+    /**
+     * Builds the "next page" button of a <code>/whois</code> listing,
+     * remembering its {@link Cursor} if needed.
+     * 
+     * @param cursor The {@link Cursor} of the listing.
+     * @param id     The identifier of the {@link Cursor}, or <code>null</code>
+     *               to generate a new one.
+     * @return The button in question, or <code>null</code> if there are no
+     *         more pages.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private InlineKeyboardMarkup nextPageButton(Cursor cursor, Long id) {
+        if (cursor.isExhausted()) {
+            if (id != null)
+                cursors.remove(id);
+            return null;
+        }
+        final Long cursorId = id == null ? cursorIds.incrementAndGet() : id;
+        cursors.put(cursorId, cursor);
+        final InlineKeyboardButton button = new InlineKeyboardButton();
+        button.setText(NEXTPAGELABEL);
+        button.setCallbackData(String.format(NEXTPAGEDATA, cursorId));
+        final InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        markup.setKeyboard(Collections.singletonList(Collections.singletonList(button)));
+        return markup;
     }
 
     /**
      * Applies a certain action to a {@link Profile}.
      * 
+     * @param parser   The {@link ArgumentParser} to be used.
      * @param profile  The {@Profile} to be edited.
      * @param argument A {@String} representing the action to apply.
      * @return <code>true</code> on success, <code>false</code> on failure.
@@ -247,83 +1049,65 @@ public class TeleGrindr extends AbilityBot {
      * @version 1.0
      * @since 1.0
      */
-    private boolean update(Profile profile, String argument) {
-        Matcher matcher = TAGARGUMENTPATTERN.matcher(argument);
-        if (matcher.matches()) {
-            String tag = matcher.group(2);
-            if (matcher.group(1).equals(REMOVETAGARGUMENTPREFIX))
-                profile.removeTag(tag);
-            else
-                profile.addTag(tag);
-        } else {
-            matcher = STATARGUMENTPATTERN.matcher(argument);
-            if (matcher.matches()) {
-                final String uom = matcher.group(2);
-                for (Stat stat : Stat.values())
-                    if (stat.uom().equals(uom)) {
-                        final int value = Integer.parseInt(matcher.group(1));
-                        if (stat.validate(value))
-                            profile.putStat(stat, value);
-                        break;
-                    }
-            } else {
-                matcher = Profile.EMOJIPATTERN.matcher(argument);
-                if (matcher.matches())
-                    profile.setEmoji(argument);
+    private boolean update(ArgumentParser parser, Profile profile, String argument) {
+        switch (parser.parseIam(argument)) {
+            case TAG:
+                if (parser.isNegated())
+                    profile.removeTag(parser.getTag());
                 else
-                    return false;
-            }
+                    profile.addTag(parser.getTag());
+                return true;
+            case STAT:
+                final Stat stat = parser.getStat();
+                if (stat != null) {
+                    final int value = parser.getValue();
+                    if (stat.validate(value))
+                        profile.putStat(stat, value);
+                }
+                return true;
+            case EMOJI:
+                profile.setEmoji(argument);
+                return true;
+            default:
+                return false;
         }
-        return true;
     }
 
     /** The action related to the <code>/start</code> command. */
     final private Consumer<MessageContext> startAction = ctx -> {
-        silent.sendMd(String.format("*Hi!* 👋%nThe name's _TeleGrindr_ and I can help you get in contact "
-                + "with other users in the same Telegram groups as you. If you do "
-                + "not know where to start, just ask me for /help."), ctx.chatId());
+        outbox.sendMd(ctx.chatId(), STARTTEXT);
         logger.info("sent 'start' message.");
     };
 
     /** The action related to the <code>/help</code> command. */
     final private Consumer<MessageContext> helpAction = ctx -> {
-        final Long chat = ctx.chatId();
-        silent.sendMd(String.format("::= = is%n" + "| = or%n" + "\\[ ] = once or none%n" + "{ } = zero or more times"),
-                chat);
-        silent.sendMd(String.format("*👤 SETTING UP YOUR PROFILE%n" + "/iam {argument}*%n%n"
-                + "_argument_ ::= _stat_|_property_%n" + "_stat_ ::= _integer_(yo|cm|kg)%n"
-                + "_property_ ::= \\[+|-]#_hashtag_%n%n"
-                + "ex. `/iam 29yo -#jock #nerd 175cm` sets your age and height. "
-                + "It also replaces one of your tags with another.%n" + "📍 You can also send me your location."),
-                chat);
-        silent.sendMd(String.format("*🔍 SHOWING SOMEONE'S PROFILE%n" + "/howis @%s*", getBotUsername()), chat);
-        silent.sendMd(String.format("*👥 LISTING PROFILES%n" + "/whois {filter}*%n%n"
-                + "_filter_ ::= _range_|_property_%n" + "_range_ ::= \\[_integer_]\\[,]\\[_integer_](yo|cm|kg|km)%n"
-                + "_property_ ::= \\[+|-]#_hashtag_%n%n"
-                + "ex. `/whois 18,29yo #single ,10km -#sporty` selects profiles "
-                + "within the specified ranges and (not) having the specified tags."), chat);
+        outbox.sendMd(ctx.chatId(), helpText);
         logger.info("sent 'help' message.");
     };
 
     /** The action related to the <code>/iam</code> command. */
     final private Consumer<MessageContext> iamAction = ctx -> {
         final Long chat = ctx.chatId();
-        final Profile profile = getProfile(ctx.chatId(), ctx.user());
-        for (String argument : ctx.arguments())
-            if (!update(profile, argument))
-                silent.send(String.format(UNKNOWNARGUMENT, argument), ctx.chatId());
+        final List<String> unknown = new ArrayList<String>();
+        final ArgumentParser parser = new ArgumentParser();
+        final Profile profile = updateProfile(chat, ctx.user(), p -> {
+            unknown.clear();
+            for (String argument : ctx.arguments())
+                if (!update(parser, p, argument))
+                    unknown.add(argument);
+        });
+        for (String argument : unknown)
+            outbox.send(chat, String.format(UNKNOWNARGUMENT, argument));
         print(profile, chat);
-        setProfile(chat, profile);
         logger.info(profile.toShortString() + " updated.");
     };
 
     /** The reply related to the <code>/iam</code> command. */
     final private Consumer<Update> iamReply = upd -> {
         final Message message = upd.getMessage();
-        final Profile profile = getProfile(upd.getMessage().getChatId(), upd.getMessage().getFrom());
-        profile.location = message.getLocation();
-        setProfile(message.getChatId(), profile);
-        print(profile, upd.getMessage().getChatId());
+        final Profile profile = updateProfile(message.getChatId(), message.getFrom(),
+                p -> p.location = message.getLocation());
+        print(profile, message.getChatId());
         logger.info(profile.toShortString() + "'s position updated.");
     };
 
@@ -331,13 +1115,14 @@ public class TeleGrindr extends AbilityBot {
     final private Consumer<MessageContext> howisAction = ctx -> {
         final String arg = ctx.firstArg(), tag = arg.substring(arg.charAt(0) == TAGPREFIX ? 1 : 0);
         final Long chat = ctx.chatId();
-        Optional<Profile> profile = db.<Integer, Profile>getMap(String.format(PROFILESTABLE, chat)).values().stream()
-                .filter(p -> p != null && p.user != null && tag.equalsIgnoreCase(p.user.getUserName())).findAny();
+        final Integer userId = usernames(chat).get(usernameKey(tag));
+        Optional<Profile> profile = Optional.ofNullable(userId)
+                .map(id -> findProfile(chat, id));
         if (profile.isPresent()) {
             print(profile.get(), chat);
             logger.info(profile.get().toShortString() + " was queried");
         } else {
-            silent.send(String.format(UNKNOWNARGUMENT, TAGPREFIX + tag), chat);
+            outbox.send(chat, String.format(UNKNOWNARGUMENT, TAGPREFIX + tag));
             logger.info("no profiles for '" + TAGPREFIX + tag + "'");
         }
     };
@@ -345,16 +1130,103 @@ public class TeleGrindr extends AbilityBot {
     /** The action related to the <code>/whois</code> command. */
     final private Consumer<MessageContext> whoisAction = ctx -> {
         final Long chat = ctx.chatId();
-        final Location from = getProfile(chat, ctx.user()).location;
+        final Profile caller = findProfile(chat, ctx.user().getId());
+        final Location from = caller == null ? null : caller.location;
         final Filter filter = new Filter(ctx.arguments(), from);
         if (from != null || !filter.isLocationNeeded()) {
-            print(db.<Integer, Profile>getMap(String.format(PROFILESTABLE, chat)).values().stream().filter(filter)
-                    .toArray(Profile[]::new), chat);
+            final QueryCache<Listing> cache = cache(chat);
+            final Listing cached = cache.get(filter.getKey());
+            final Cursor cursor;
+            final int[] matches;
+            if (cached != null) {
+                cursor = new Cursor(cached.next);
+                matches = cached.firstPage;
+            } else {
+                final long generation = cache.generation();
+                cursor = new Cursor(filter);
+                matches = page(chat, cursor);
+                cache.put(filter.getKey(), new Listing(matches, new Cursor(cursor)), generation);
+            }
+            final SendMessage message = new SendMessage();
+            message.setChatId(chat.toString());
+            message.setText(list(profiles(chat, matches)));
+            message.setReplyMarkup(nextPageButton(cursor, null));
+            outbox.execute(chat, message);
             logger.info("query executed");
         } else {
-            silent.send(String.format(UNKNOWNARGUMENT, LOCATIONLABEL), chat);
+            outbox.send(chat, String.format(UNKNOWNARGUMENT, LOCATIONLABEL));
             logger.info("refused to filter based on distance (no position specified)");
         }
     };
 
+    /** The reply related to the "next page" button of a <code>/whois</code> listing. */
+    final private Consumer<Update> nextPageReply = upd -> {
+        final CallbackQuery query = upd.getCallbackQuery();
+        final Message message = query.getMessage();
+        final Matcher matcher = NEXTPAGEPATTERN.matcher(query.getData());
+        matcher.matches();
+        final Long cursorId = Long.parseLong(matcher.group(1));
+        final Cursor cursor = cursors.get(cursorId);
+        final AnswerCallbackQuery answer = new AnswerCallbackQuery();
+        answer.setCallbackQueryId(query.getId());
+        if (cursor == null || message == null) {
+            answer.setText(String.format(UNKNOWNARGUMENT, NEXTPAGELABEL));
+            outbox.execute(Long.valueOf(query.getFrom().getId()), answer);
+            logger.info("expired listing requested");
+            return;
+        }
+        final Long chat = message.getChatId();
+        final EditMessageText edit = new EditMessageText();
+        edit.setChatId(chat.toString());
+        edit.setMessageId(message.getMessageId());
+        edit.setText(list(profiles(chat, page(chat, cursor))));
+        edit.setReplyMarkup(nextPageButton(cursor, cursorId));
+        outbox.execute(chat, edit);
+        outbox.execute(chat, answer);
+        logger.info("query resumed");
+    };
+
+    /** The action related to the <code>/cachestats</code> command. */
+    final private Consumer<MessageContext> cachestatsAction = ctx -> {
+        outbox.send(ctx.chatId(), String.format(CACHESTATS, cacheHits(), cacheMisses(), profileCache.getHits(),
+                profileCache.getMisses(), profileCache.getChats(), profileCache.getProfiles(),
+                profileCache.getBytes() / 1024));
+        logger.info("sent 'cachestats' message.");
+    };
+
+    /** The action related to the <code>/chatstats</code> command. */
+    final private Consumer<MessageContext> chatstatsAction = ctx -> {
+        final Long chat = ctx.chatId();
+        final ChatStatistics stats = statistics(chat);
+        final StringBuilder res = new StringBuilder();
+        res.append(String.format(CHATSTATS, stats.profiles(), stats.located(), stats.cells(), stats.densestCell(),
+                stats.footprint() / 1024));
+        for (Stat stat : Stat.values())
+            if (stats.count(stat) > 0)
+                res.append(LINESEPARATOR).append(String.format(STATSUMMARY, stat.uom(), stats.count(stat),
+                        stats.quantile(stat, 0), stats.quantile(stat, 0.5), stats.quantile(stat, 1)));
+        res.append(LINESEPARATOR).append("#️⃣ × ").append(stats.distinctTags());
+        for (Map.Entry<String, Integer> tag : stats.topTags(TOPTAGS))
+            res.append(' ').append('#').append(tag.getKey()).append(" × ").append(tag.getValue());
+        if (ctx.arguments().length > 0) {
+            final Profile caller = findProfile(chat, ctx.user().getId());
+            final Filter filter = new Filter(ctx.arguments(), caller == null ? null : caller.location);
+            res.append(LINESEPARATOR).append("🔍 ≈ ").append(stats.estimate(filter));
+        }
+        outbox.send(chat, res.toString());
+        logger.info("sent 'chatstats' message.");
+    };
+
+    /** The action related to the <code>/explain</code> command. */
+    final private Consumer<MessageContext> explainAction = ctx -> {
+        final Long chat = ctx.chatId();
+        final Profile caller = findProfile(chat, ctx.user().getId());
+        final Filter filter = new Filter(ctx.arguments(), caller == null ? null : caller.location);
+        final long start = System.nanoTime();
+        final QueryPlan plan = snapshot(chat).explain(filter);
+        final double elapsed = (System.nanoTime() - start) / 1e6;
+        outbox.send(chat, plan + String.format(EXPLAINTIME, elapsed));
+        logger.info("sent 'explain' message.");
+    };
+
 }
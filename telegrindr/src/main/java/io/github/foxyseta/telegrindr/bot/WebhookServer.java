@@ -0,0 +1,174 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A <code>WebhookServer</code> receives the updates of a {@link TeleGrindr}
+ * through a webhook instead of long polling. Requests are accepted by the
+ * selector thread of a local HTTP server, which only reads them and hands
+ * them to a bounded pool of workers. Once the queue of the pool is full, new
+ * updates are refused with <code>503 Service Unavailable</code>, so that
+ * Telegram retries them later.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class WebhookServer {
+
+    /** The prefix of the local path updates are received on. */
+    final public static String PATHPREFIX = "/telegrindr/";
+    /** The seconds Telegram is asked to wait before retrying a refused update. */
+    final public static int RETRYAFTER = 1;
+
+    /**
+     * Instantiates a new {@link WebhookServer}, which still needs to be
+     * {@linkplain #start started}.
+     *
+     * @param bot      The {@link TeleGrindr} receiving the updates.
+     * @param settings The {@link Settings} of the webhook.
+     * @throws IllegalArgumentException The {@link Settings} lack a
+     *                                  {@linkplain Settings#getWebhookUrl
+     *                                  webhook URL}.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public WebhookServer(TeleGrindr bot, Settings settings) {
+        if (settings.getWebhookUrl() == null)
+            throw new IllegalArgumentException("WebhookServer.WebhookServer: no webhook URL");
+        this.bot = bot;
+        url = settings.getWebhookUrl().replaceAll("/+$", "");
+        port = settings.getWebhookPort();
+        workers = new ThreadPoolExecutor(settings.getWebhookThreads(), settings.getWebhookThreads(), 0,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(settings.getWebhookQueue()));
+    }
+
+    /**
+     * Starts listening for updates and registers the webhook with Telegram.
+     * The local path includes a random secret, so that only Telegram knows
+     * where to send updates.
+     *
+     * @throws IOException          The server could not be started.
+     * @throws TelegramApiException The webhook could not be registered.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void start() throws IOException, TelegramApiException {
+        final String path = PATHPREFIX + UUID.randomUUID();
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(path, this::handle);
+        server.start();
+        bot.onRegister();
+        final SetWebhook webhook = new SetWebhook();
+        webhook.setUrl(url + path);
+        bot.execute(webhook);
+        logger.info("webhook listening on port " + server.getAddress().getPort());
+    }
+
+    /**
+     * Stops accepting updates, waits for the pending ones to be handled, then
+     * closes the bot.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void stop() {
+        if (server != null)
+            server.stop(0);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        bot.onClosing();
+        logger.info("webhook stopped");
+    }
+
+    /** Logs notices regarding the webhook. */
+    final private static Logger logger = Logger.getLogger(WebhookServer.class.getName());
+    /** Parses the updates. */
+    final private static ObjectMapper mapper = new ObjectMapper();
+
+    /** The {@link TeleGrindr} receiving the updates. */
+    final private TeleGrindr bot;
+    /** The public URL of the webhook, without the local path. */
+    final private String url;
+    /** The local port listening for updates. */
+    final private int port;
+    /** Handles the updates. */
+    final private ThreadPoolExecutor workers;
+    /** The underlying HTTP server, once started. */
+    private HttpServer server;
+
+    /**
+     * Reads a single update and queues it.
+     *
+     * @param exchange The HTTP exchange.
+     * @throws IOException The exchange failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            final byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            try {
+                workers.execute(() -> dispatch(body));
+                exchange.sendResponseHeaders(200, -1);
+            } catch (RejectedExecutionException e) {
+                exchange.getResponseHeaders().set("Retry-After", Integer.toString(RETRYAFTER));
+                exchange.sendResponseHeaders(503, -1);
+                logger.warning("update refused (all workers busy)");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Parses an update and passes it to the bot.
+     *
+     * @param body The JSON representation of the update.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void dispatch(byte[] body) {
+        try {
+            bot.onUpdateReceived(mapper.readValue(body, Update.class));
+        } catch (IOException e) {
+            logger.warning("malformed update: " + e.getMessage());
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "update failed", e);
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.github.foxyseta.telegrindr.bot.data.Profile;
+
+/**
+ * A <code>WriteBehind</code> buffers the {@link Profile} instances to be
+ * stored in a {@link ProfileStore}. Repeated writes to the same {@link Profile} are
+ * coalesced, and every pending write is flushed in a single batch ending with
+ * a single {@link ProfileStore#commit}, at most {@link Settings#getWriteDelay}
+ * milliseconds later. A batch is only committed as a whole if nothing else
+ * commits the {@link ProfileStore} meanwhile: {@link TeleGrindr} ensures it by
+ * deferring the commits {@link org.telegram.abilitybots.api.bot.AbilityBot}
+ * makes after every update when both share a database.
+ * Reads see pending writes, so that the buffer is invisible to its users.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class WriteBehind {
+
+    /**
+     * Instantiates a new {@link WriteBehind}.
+     *
+     * @param store    The {@link ProfileStore} the {@link Profile} instances
+     *                 are stored in.
+     * @param settings The {@link Settings} to be used.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public WriteBehind(ProfileStore store, Settings settings) {
+        this.store = store;
+        final long delay = settings.getWriteDelay();
+        batch = settings.getWriteBatch();
+        if (delay > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "telegrindr-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, delay, delay, TimeUnit.MILLISECONDS);
+        } else
+            flusher = null;
+    }
+
+    /**
+     * Retrieves a {@link Profile}, including any write not flushed yet.
+     *
+     * @param chatId The chat where the {@link Profile} was set up.
+     * @param userId The user who set up the {@link Profile}.
+     * @return The {@link Profile} in question or <code>null</code>.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public Profile get(Long chatId, Integer userId) {
+        synchronized (this) {
+            Map<Integer, Profile> chat = pending.get(chatId);
+            if (chat != null && chat.containsKey(userId))
+                return chat.get(userId);
+            chat = flushing.get(chatId);
+            if (chat != null && chat.containsKey(userId))
+                return chat.get(userId);
+        }
+        return store.get(chatId, userId);
+    }
+
+    /**
+     * Stores a {@link Profile}, replacing any write to the same {@link
+     * Profile} not flushed yet. The {@link Profile} must not be modified
+     * afterwards.
+     *
+     * @param chatId  The chat where the {@link Profile} was set up.
+     * @param profile The up-to-date {@link Profile}.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void put(Long chatId, Profile profile) {
+        if (flusher == null) {
+            store.put(chatId, profile);
+            return;
+        }
+        final boolean full;
+        synchronized (this) {
+            if (pending.computeIfAbsent(chatId, chat -> new HashMap<Integer, Profile>())
+                    .put(profile.user.getId(), profile) == null)
+                ++size;
+            full = size == batch;
+        }
+        if (full)
+            flusher.execute(this::flushQuietly);
+    }
+
+    /**
+     * Writes every pending {@link Profile} to the {@link ProfileStore}, then
+     * commits.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            final int count;
+            synchronized (this) {
+                if (size == 0)
+                    return;
+                final Map<Long, Map<Integer, Profile>> swap = flushing;
+                flushing = pending;
+                pending = swap;
+                count = size;
+                size = 0;
+            }
+            boolean written = false;
+            try {
+                for (Map.Entry<Long, Map<Integer, Profile>> chat : flushing.entrySet())
+                    store.putAll(chat.getKey(), chat.getValue());
+                store.commit();
+                written = true;
+            } finally {
+                synchronized (this) {
+                    // whatever failed to be written is retried by the next flush
+                    if (!written)
+                        for (Map.Entry<Long, Map<Integer, Profile>> chat : flushing.entrySet())
+                            for (Map.Entry<Integer, Profile> p : chat.getValue().entrySet())
+                                if (pending.computeIfAbsent(chat.getKey(), c -> new HashMap<Integer, Profile>())
+                                        .putIfAbsent(p.getKey(), p.getValue()) == null)
+                                    ++size;
+                    flushing.clear();
+                }
+            }
+            ++flushes;
+            writes += count;
+        }
+    }
+
+    /**
+     * Stops flushing periodically, then flushes whatever is left.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Gets the number of {@link Profile} instances written to the database so
+     * far.
+     *
+     * @return The number of writes.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public long getWrites() {
+        synchronized (flushLock) {
+            return writes;
+        }
+    }
+
+    /**
+     * Gets the number of batches written to the database so far.
+     *
+     * @return The number of batches.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    public long getFlushes() {
+        synchronized (flushLock) {
+            return flushes;
+        }
+    }
+
+    /** Logs notices regarding the writes. */
+    final private static Logger logger = Logger.getLogger(WriteBehind.class.getName());
+
+    /** The {@link ProfileStore} the {@link Profile} instances are stored in. */
+    final private ProfileStore store;
+    /** The number of pending writes triggering an early flush. */
+    final private int batch;
+    /** Flushes periodically, or <code>null</code> if writes are not buffered. */
+    final private ScheduledExecutorService flusher;
+    /** Serializes the flushes. */
+    final private Object flushLock = new Object();
+    /** The pending writes of each chat. */
+    private Map<Long, Map<Integer, Profile>> pending = new HashMap<Long, Map<Integer, Profile>>();
+    /** The writes of each chat being flushed. */
+    private Map<Long, Map<Integer, Profile>> flushing = new HashMap<Long, Map<Integer, Profile>>();
+    /** The number of {@link #pending} writes. */
+    private int size;
+    /** The number of writes flushed so far. */
+    private long writes;
+    /** The number of flushes so far. */
+    private long flushes;
+
+    /**
+     * Flushes, logging any failure instead of throwing it.
+     *
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "flush failed", e);
+        }
+    }
+
+}
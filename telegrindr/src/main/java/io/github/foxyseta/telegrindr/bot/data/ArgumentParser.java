@@ -0,0 +1,378 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+/**
+ * An <code>ArgumentParser</code> recognizes the arguments of <code>/iam</code>
+ * and <code>/whois</code> in a single pass over their characters, without any
+ * regex. It accepts exactly what the regexes it replaced used to accept
+ * ({@link Filter#TAGARGUMENTREGEX}, {@link Filter#RANGEARGUMENTREGEX}, {@link
+ * Filter#LIMITARGUMENTREGEX}, <code>(\d+)(\w+)</code> for stats and {@link
+ * Profile#EMOJIREGEX}), so that the bot answers as it always did. After each
+ * call to {@link #parseIam} or {@link #parseWhois}, the getters describe the
+ * argument just parsed. An <code>ArgumentParser</code> can be reused, but not
+ * shared among threads.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ArgumentParser {
+
+    /**
+     * A <code>Kind</code> tells what an argument turned out to be.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public enum Kind {
+
+        /** A tag, possibly preceded by a sign. */
+        TAG,
+        /** A value followed by its unit (<code>/iam</code> only). */
+        STAT,
+        /** A single emoji (<code>/iam</code> only). */
+        EMOJI,
+        /** A range followed by its unit (<code>/whois</code> only). */
+        RANGE,
+        /** A maximum number of results (<code>/whois</code> only). */
+        LIMIT,
+        /** Anything else. */
+        UNKNOWN
+
+    }
+
+    /** The prefix of a {@link Kind#LIMIT}. */
+    final public static String LIMITPREFIX = "top";
+
+    /**
+     * Parses an argument of <code>/iam</code>, trying to read it as a tag,
+     * then as a stat and finally as an emoji.
+     *
+     * @param argument The argument in question.
+     * @return What the argument turned out to be.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Kind parseIam(String argument) {
+        this.argument = argument;
+        if (tag())
+            return Kind.TAG;
+        if (stat())
+            return Kind.STAT;
+        if (Profile.isEmoji(argument))
+            return Kind.EMOJI;
+        return Kind.UNKNOWN;
+    }
+
+    /**
+     * Parses an argument of <code>/whois</code>, trying to read it as a
+     * limit, then as a range and finally as a tag.
+     *
+     * @param argument The argument in question.
+     * @return What the argument turned out to be.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Kind parseWhois(String argument) {
+        this.argument = argument;
+        if (limit())
+            return Kind.LIMIT;
+        if (range())
+            return Kind.RANGE;
+        if (tag())
+            return Kind.TAG;
+        return Kind.UNKNOWN;
+    }
+
+    /**
+     * Gets the tag of a {@link Kind#TAG}.
+     *
+     * @return The tag, without its sign and its <code>#</code>.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public String getTag() {
+        return argument.substring(start, end);
+    }
+
+    /**
+     * Checks whether a {@link Kind#TAG} is preceded by a <code>-</code>.
+     *
+     * @return <code>true</code> if the tag is to be removed or excluded,
+     * <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public boolean isNegated() {
+        return negated;
+    }
+
+    /**
+     * Gets the value of a {@link Kind#STAT} or a {@link Kind#LIMIT}, or the
+     * minimum of a {@link Kind#RANGE}.
+     *
+     * @return The value in question, or <code>null</code> if it is missing.
+     * @throws NumberFormatException The value does not fit an
+     * <code>int</code>.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Integer getValue() {
+        return start == end ? null
+                            : Integer.parseInt(argument, start, end, 10);
+    }
+
+    /**
+     * Gets the maximum of a {@link Kind#RANGE}. Without a comma, the maximum
+     * is the minimum itself.
+     *
+     * @return The maximum in question, or <code>null</code> if it is missing.
+     * @throws NumberFormatException The maximum does not fit an
+     * <code>int</code>.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Integer getMax() {
+        if (!comma)
+            return getValue();
+        return maxStart == maxEnd
+               ? null : Integer.parseInt(argument, maxStart, maxEnd, 10);
+    }
+
+    /**
+     * Gets the {@link Stat} whose unit ends a {@link Kind#STAT} or a {@link
+     * Kind#RANGE}.
+     *
+     * @return The {@link Stat} in question, or <code>null</code> if the unit
+     * is unknown.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Stat getStat() {
+        return Stat.of(argument, unit, argument.length());
+    }
+
+    /**
+     * Checks the unit ending a {@link Kind#STAT} or a {@link Kind#RANGE}.
+     *
+     * @param uom The expected unit.
+     * @return <code>true</code> if the unit is <code>uom</code>, <code>false
+     * </code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public boolean hasUnit(String uom) {
+        return argument.length() - unit == uom.length()
+               && argument.startsWith(uom, unit);
+    }
+
+    /** The argument being parsed. */
+    private String argument;
+    /** Where the tag or the (minimum) value starts. */
+    private int start;
+    /** Where the tag or the (minimum) value ends. */
+    private int end;
+    /** Whether the tag is preceded by a <code>-</code>. */
+    private boolean negated;
+    /** Whether the range contains a comma. */
+    private boolean comma;
+    /** Where the maximum of the range starts. */
+    private int maxStart;
+    /** Where the maximum of the range ends. */
+    private int maxEnd;
+    /** Where the unit starts. */
+    private int unit;
+
+    /**
+     * Checks whether a character is a digit, as per <code>\d</code>.
+     *
+     * @param c The character in question.
+     * @return <code>true</code> if it is an ASCII digit, <code>false</code>
+     * otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Checks whether a character may belong to a tag.
+     *
+     * @param c The character in question.
+     * @return <code>true</code> if it is an ASCII letter or digit, <code>false
+     * </code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static boolean isAlphanumeric(char c) {
+        return isDigit(c) || c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z';
+    }
+
+    /**
+     * Checks whether a character is a word character, as per <code>\w
+     * </code>.
+     *
+     * @param c The character in question.
+     * @return <code>true</code> if it is an ASCII letter or digit or an
+     * underscore, <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static boolean isWord(char c) {
+        return isAlphanumeric(c) || c == '_';
+    }
+
+    /**
+     * Checks whether a character ends a line, so that <code>.</code> does not
+     * match it.
+     *
+     * @param c The character in question.
+     * @return <code>true</code> if it is a line terminator, <code>false
+     * </code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028'
+               || c == '\u2029';
+    }
+
+    /**
+     * Reads the argument as <code>[+-]?#[0-9A-Za-z]+.*</code>.
+     *
+     * @return <code>true</code> on success, <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private boolean tag() {
+        final int length = argument.length();
+        int i = 0;
+        negated = length > 0 && argument.charAt(0) == '-';
+        if (negated || length > 0 && argument.charAt(0) == '+')
+            ++i;
+        if (i == length || argument.charAt(i++) != '#')
+            return false;
+        start = i;
+        while (i < length && isAlphanumeric(argument.charAt(i)))
+            ++i;
+        end = i;
+        if (start == end)
+            return false;
+        for (; i < length; ++i)
+            if (isLineTerminator(argument.charAt(i)))
+                return false;
+        return true;
+    }
+
+    /**
+     * Reads the argument as <code>(\d+)(\w+)</code>.
+     *
+     * @return <code>true</code> on success, <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private boolean stat() {
+        final int length = argument.length();
+        int i = 0;
+        while (i < length && isDigit(argument.charAt(i)))
+            ++i;
+        if (i == 0 || length < 2 || !words(i))
+            return false;
+        // the unit takes the last digit if nothing else is left
+        end = i == length ? i - 1 : i;
+        start = 0;
+        unit = end;
+        return true;
+    }
+
+    /**
+     * Reads the argument as <code>top(\d+)</code>.
+     *
+     * @return <code>true</code> on success, <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private boolean limit() {
+        final int length = argument.length();
+        if (length == LIMITPREFIX.length() || !argument.startsWith(LIMITPREFIX))
+            return false;
+        for (int i = LIMITPREFIX.length(); i < length; ++i)
+            if (!isDigit(argument.charAt(i)))
+                return false;
+        start = LIMITPREFIX.length();
+        end = length;
+        return true;
+    }
+
+    /**
+     * Reads the argument as <code>(\d*)(,?)(\d*)(\w+)</code>, splitting it
+     * exactly as the backtracking regex would.
+     *
+     * @return <code>true</code> on success, <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private boolean range() {
+        final int length = argument.length();
+        int i = 0;
+        while (i < length && isDigit(argument.charAt(i)))
+            ++i;
+        start = 0;
+        end = i;
+        comma = i < length && argument.charAt(i) == ',';
+        if (comma)
+            ++i;
+        maxStart = i;
+        while (i < length && isDigit(argument.charAt(i)))
+            ++i;
+        maxEnd = i;
+        if (!words(i))
+            return false;
+        if (i == length) {
+            // the unit takes the last digit, if there is one
+            if (comma ? maxEnd == maxStart : end == 0)
+                return false;
+            if (comma)
+                --maxEnd;
+            else
+                maxStart = maxEnd = --end;
+        }
+        unit = comma ? maxEnd : end;
+        return true;
+    }
+
+    /**
+     * Checks whether the argument ends with word characters only.
+     *
+     * @param from The index of the first character to be checked.
+     * @return <code>true</code> if every character from <code>from</code>
+     * onwards is a word character, <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private boolean words(int from) {
+        for (int i = from; i < argument.length(); ++i)
+            if (!isWord(argument.charAt(i)))
+                return false;
+        return true;
+    }
+
+}
@@ -0,0 +1,823 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.telegram.telegrambots.meta.api.objects.Location;
+
+/**
+ * A <code>ChatSnapshot</code> keeps the searchable fields of every {@link
+ * Profile} in a single chat as parallel arrays (one column per field), so
+ * that a {@link Filter} can be evaluated without deserializing a single
+ * {@link Profile}. Each user is given a dense slot, in order of arrival,
+ * which is the row index in every column as well as the key used by the
+ * {@link TagIndex} and the {@link GeoIndex} of the chat. Queries are planned
+ * on the {@link ChatStatistics} of the chat, which the snapshot only reads:
+ * whoever updates the snapshot keeps them up to date as well.
+ *
+ * @see #select
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ChatSnapshot {
+
+    /**
+     * When more than one candidate slot out of <code>DENSESCANRATIO</code>
+     * survives the indexes, the columns are scanned from top to bottom.
+     */
+    final public static int DENSESCANRATIO = 8;
+    /**
+     * The number of rows below which a parallel scan stops splitting its
+     * work.
+     */
+    final public static int PARALLELGRAIN = 4096;
+    /**
+     * The number of rows evaluated at once, which bounds the memory used by
+     * a single scan.
+     */
+    final public static int WINDOW = 1 << 16;
+    /** The version of the layout written by {@link #write}. */
+    final public static int LAYOUTVERSION = 1;
+
+    /**
+     * Instantiates a new, empty {@link ChatSnapshot}.
+     *
+     * @param statistics See {@link #statistics}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public ChatSnapshot(ChatStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Adds a {@link Profile} to the snapshot, or overwrites its row.
+     *
+     * @param profile The up-to-date {@link Profile}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized void update(Profile profile) {
+        final Integer userId = profile.user.getId();
+        Integer slot = slotOf.get(userId);
+        final boolean added = slot == null;
+        if (added) {
+            slot = size++;
+            if (size > userIds.length)
+                grow();
+            slotOf.put(userId, slot);
+            userIds[slot] = userId;
+            live.set(slot);
+        }
+        final Location location = profile.location;
+        latitudes[slot] = location == null ? Double.NaN
+                                           : location.getLatitude();
+        longitudes[slot] = location == null ? Double.NaN
+                                            : location.getLongitude();
+        for (int i = 0; i < STATS.length; ++i)
+            stats[i][slot] = profile.getStat(STATS[i]);
+        tags.update(slot, profile.unmodifiableTags());
+        geo.update(slot, location);
+    }
+
+    /**
+     * Writes the columns of the snapshot, so that it can be {@linkplain #read
+     * read} back without deserializing a single {@link Profile}. The indexes
+     * are not written, since they are quickly rebuilt from the columns.
+     *
+     * @param out The output to write to.
+     * @throws IOException The output failed.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized void write(DataOutput out) throws IOException {
+        out.writeInt(LAYOUTVERSION);
+        out.writeInt(STATS.length);
+        out.writeInt(size);
+        for (int slot = 0; slot < size; ++slot)
+            out.writeInt(userIds[slot]);
+        for (int slot = 0; slot < size; ++slot)
+            out.writeDouble(latitudes[slot]);
+        for (int slot = 0; slot < size; ++slot)
+            out.writeDouble(longitudes[slot]);
+        for (int i = 0; i < STATS.length; ++i)
+            for (int slot = 0; slot < size; ++slot)
+                out.writeInt(stats[i][slot]);
+        for (int slot = 0; slot < size; ++slot) {
+            final Collection<String> slotTags = tags.get(slot);
+            out.writeShort(slotTags.size());
+            for (String tag : slotTags) {
+                final byte[] bytes = tag.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot previously {@linkplain #write written}, rebuilding its
+     * indexes.
+     *
+     * @param in The buffer to read from, starting at its position.
+     * @param statistics See {@link #statistics}.
+     * @return The snapshot in question.
+     * @throws IOException The layout is unknown or the buffer is truncated.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public static ChatSnapshot read(ByteBuffer in, ChatStatistics statistics)
+        throws IOException {
+        try {
+            if (in.getInt() != LAYOUTVERSION || in.getInt() != STATS.length)
+                throw new IOException("ChatSnapshot.read: unknown layout");
+            final ChatSnapshot res = new ChatSnapshot(statistics);
+            final int size = in.getInt(),
+                      capacity = Math.max(INITIALCAPACITY, size);
+            res.size = size;
+            res.userIds = new int[capacity];
+            in.asIntBuffer().get(res.userIds, 0, size);
+            in.position(in.position() + size * Integer.BYTES);
+            res.latitudes = new double[capacity];
+            in.asDoubleBuffer().get(res.latitudes, 0, size);
+            in.position(in.position() + size * Double.BYTES);
+            res.longitudes = new double[capacity];
+            in.asDoubleBuffer().get(res.longitudes, 0, size);
+            in.position(in.position() + size * Double.BYTES);
+            for (int i = 0; i < STATS.length; ++i) {
+                res.stats[i] = new int[capacity];
+                in.asIntBuffer().get(res.stats[i], 0, size);
+                in.position(in.position() + size * Integer.BYTES);
+            }
+            final List<String> slotTags = new ArrayList<String>();
+            for (int slot = 0; slot < size; ++slot) {
+                slotTags.clear();
+                for (int n = in.getShort(); n > 0; --n) {
+                    final byte[] bytes = new byte[in.getShort()];
+                    in.get(bytes);
+                    slotTags.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+                res.slotOf.put(res.userIds[slot], slot);
+                res.live.set(slot);
+                res.tags.update(slot, slotTags);
+                final double lat = res.latitudes[slot],
+                             lon = res.longitudes[slot];
+                if (!Double.isNaN(lat)) {
+                    final Location location = new Location();
+                    location.setLatitude(lat);
+                    location.setLongitude(lon);
+                    res.geo.update(slot, location);
+                }
+            }
+            return res;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("ChatSnapshot.read: truncated snapshot", e);
+        }
+    }
+
+    /**
+     * Gets the number of users in the snapshot.
+     *
+     * @return The number of rows in use.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Finds every user whose {@link Profile} passes a {@link Filter}. Tags
+     * and distances are first narrowed down through the indexes, then the
+     * stat and distance ranges are checked against the columns.
+     *
+     * @param filter The {@link Filter} to be evaluated.
+     * @return The identifiers of the matching users, in order of arrival.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public int[] select(Filter filter) {
+        return select(filter, null);
+    }
+
+    /**
+     * Finds every user whose {@link Profile} passes a {@link Filter}, like
+     * {@link #select(Filter)} does, but splits the scan of the columns among
+     * the workers of a {@link ForkJoinPool}. The result does not depend on
+     * how the work was split.
+     *
+     * @param filter The {@link Filter} to be evaluated.
+     * @param pool The {@link ForkJoinPool} to be used, or <code>null</code>
+     * to scan sequentially.
+     * @return The identifiers of the matching users, in order of arrival.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int[] select(Filter filter, ForkJoinPool pool) {
+        final QueryPlan plan = plan(filter);
+        final BitSet candidates = candidates(plan);
+        final boolean[] keep = new boolean[Math.min(size, WINDOW)];
+        int[] res = new int[INITIALCAPACITY];
+        int matches = 0;
+        for (int from = 0; from < size; from += WINDOW) {
+            final int to = Math.min(from + WINDOW, size);
+            check(plan, candidates, keep, from, to, pool);
+            for (int slot = from; slot < to; ++slot)
+                if (keep[slot - from]) {
+                    if (matches == res.length)
+                        res = Arrays.copyOf(res, matches * 2);
+                    res[matches++] = userIds[slot];
+                }
+        }
+        return Arrays.copyOf(res, matches);
+    }
+
+    /**
+     * Reads the next page of a paginated query. If the {@link Filter} asks
+     * for the {@linkplain Filter#getLimit nearest profiles} to its {@linkplain
+     * Filter#getFrom origin}, they are ranked through a bounded heap the first
+     * time and then handed out in order. Otherwise, the scan of the columns
+     * resumes from where the {@link Cursor} stopped, and ends as soon as the
+     * page is full.
+     *
+     * @param cursor The {@link Cursor} of the query, which gets moved forward.
+     * @param pageSize The maximum number of results to be returned.
+     * @param pool The {@link ForkJoinPool} to be used, or <code>null</code>
+     * to scan sequentially.
+     * @return The identifiers of the users on the page, which is empty if the
+     * {@link Cursor} is exhausted.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int[] page(Cursor cursor, int pageSize,
+                                   ForkJoinPool pool) {
+        final Filter filter = cursor.getFilter();
+        if (cursor.exhausted)
+            return new int[0];
+        // nearest first
+        if (cursor.ranked == null && filter.getLimit() > 0
+            && filter.getFrom() != null)
+            cursor.ranked = nearest(filter, filter.getLimit(), pool);
+        if (cursor.ranked != null) {
+            final int to = Math.min(cursor.offset + pageSize,
+                                    cursor.ranked.length);
+            final int[] res = Arrays.copyOfRange(cursor.ranked, cursor.offset,
+                                                 to);
+            cursor.offset = to;
+            cursor.exhausted = to == cursor.ranked.length;
+            return res;
+        }
+        // in order of arrival
+        final QueryPlan plan = plan(filter);
+        final BitSet candidates = candidates(plan);
+        final int wanted = Math.min(pageSize, cursor.remaining);
+        final boolean[] keep = new boolean[Math.min(size, WINDOW)];
+        final int[] res = new int[wanted];
+        int matches = 0, from = cursor.nextSlot;
+        while (matches < wanted && from < size) {
+            final int to = Math.min(from + WINDOW, size);
+            check(plan, candidates, keep, from, to, pool);
+            int slot = from;
+            for (; slot < to && matches < wanted; ++slot)
+                if (keep[slot - from])
+                    res[matches++] = userIds[slot];
+            from = slot;
+        }
+        cursor.nextSlot = from;
+        cursor.remaining -= matches;
+        cursor.exhausted = cursor.remaining == 0
+                           || candidates.nextSetBit(from) < 0;
+        return Arrays.copyOf(res, matches);
+    }
+
+    /**
+     * Compiles a {@link Filter} into a {@link QueryPlan}, based on the
+     * current {@link ChatStatistics} of the chat (the number of profiles
+     * using each tag, the {@link Histogram} of each {@link Stat} and the
+     * number of located profiles) and on the slots in the cells around the
+     * origin of the {@link Filter}.
+     *
+     * @param filter The {@link Filter} to be compiled.
+     * @return The {@link QueryPlan} in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized QueryPlan plan(Filter filter) {
+        final List<QueryPlan.Step> lookups = new ArrayList<QueryPlan.Step>(),
+                                   checks = new ArrayList<QueryPlan.Step>();
+        final Location from = filter.getFrom();
+        boolean empty = filter.isLocationNeeded() && from == null;
+        for (String tag : filter.include()) {
+            final int count = statistics.tagCount(tag);
+            final QueryPlan.Step step = new QueryPlan.Step(
+                QueryPlan.Kind.TAG, "#" + tag, 0, fraction(count));
+            step.tag = tag;
+            lookups.add(step);
+            empty |= count == 0;
+        }
+        for (String tag : filter.exclude()) {
+            final int count = statistics.tagCount(tag);
+            // nothing to drop
+            if (count == 0)
+                continue;
+            final QueryPlan.Step step = new QueryPlan.Step(
+                QueryPlan.Kind.EXCLUDETAG, Filter.EXCLUDETAGPREFIX + "#" + tag,
+                0, 1 - fraction(count));
+            step.tag = tag;
+            lookups.add(step);
+        }
+        for (int i = 0; i < STATS.length; ++i) {
+            final IntRange range = filter.statFilter(i);
+            if (range == null)
+                continue;
+            final QueryPlan.Step step = new QueryPlan.Step(
+                QueryPlan.Kind.STAT,
+                label(range.getMin(), range.getMax(), STATS[i].uom()),
+                QueryPlan.STATCOST, fraction(statistics.count(STATS[i], range)));
+            step.stat = i;
+            step.range = range;
+            checks.add(step);
+        }
+        if (filter.isLocationNeeded() && from != null) {
+            final String label = label(filter.minDistance(),
+                                       filter.maxDistance(),
+                                       Filter.DISTANCEUOM);
+            final Collection<Integer> area =
+                filter.maxDistance() == Double.POSITIVE_INFINITY
+                ? null : geo.near(from, filter.maxDistance());
+            // a circle covers about π/4 of the cells around it
+            double selectivity = fraction(statistics.located());
+            if (area != null) {
+                final QueryPlan.Step step = new QueryPlan.Step(
+                    QueryPlan.Kind.AREA, label, 0, fraction(area.size()));
+                step.area = area;
+                lookups.add(step);
+                empty |= area.isEmpty();
+                selectivity = Math.PI / 4;
+            }
+            checks.add(new QueryPlan.Step(QueryPlan.Kind.DISTANCE, label,
+                                          QueryPlan.DISTANCECOST,
+                                          selectivity));
+        }
+        return new QueryPlan(filter, size, lookups, checks, empty);
+    }
+
+    /**
+     * Compiles a {@link Filter} like {@link #plan} does, then runs the
+     * {@link QueryPlan} one step at a time, recording how many rows actually
+     * survived each step. Steps which would have been skipped are left
+     * without a count.
+     *
+     * @param filter The {@link Filter} to be explained.
+     * @return The {@link QueryPlan} in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized QueryPlan explain(Filter filter) {
+        final QueryPlan plan = plan(filter);
+        if (plan.isEmpty())
+            return plan;
+        final BitSet candidates = (BitSet)live.clone();
+        for (QueryPlan.Step step : plan.getLookups()) {
+            lookup(step, candidates);
+            step.actual = candidates.cardinality();
+            if (step.actual == 0)
+                return plan;
+        }
+        final List<QueryPlan.Step> checks = plan.getChecks();
+        final long[] survivors = new long[checks.size()];
+        for (int slot = candidates.nextSetBit(0); slot >= 0;
+             slot = candidates.nextSetBit(slot + 1))
+            for (int i = 0; i < checks.size()
+                            && matches(plan, checks.get(i), slot); ++i)
+                ++survivors[i];
+        for (int i = 0; i < checks.size()
+                        && (i == 0 || survivors[i - 1] > 0); ++i)
+            checks.get(i).actual = survivors[i];
+        return plan;
+    }
+
+    /**
+     * A <code>Scan</code> checks a range of rows, splitting it in halves
+     * until each one is small enough.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private class Scan extends RecursiveAction {
+
+        /**
+         * Instantiates a new {@link Scan}.
+         *
+         * @param plan The {@link QueryPlan} to be evaluated.
+         * @param keep Receives the outcome for each slot.
+         * @param base The slot corresponding to the first element of
+         * <code>keep</code>.
+         * @param from The first row to be checked.
+         * @param to The row following the last one to be checked.
+         * @author FoxySeta
+         * @version 1.0.0
+         * @since 1.0.0
+         */
+        Scan(QueryPlan plan, boolean[] keep, int base, int from, int to) {
+            this.plan = plan;
+            this.keep = keep;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Checks the rows, or forks two halves.
+         *
+         * @author FoxySeta
+         * @version 1.0.0
+         * @since 1.0.0
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLELGRAIN)
+                scan(plan, keep, base, from, to);
+            else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new Scan(plan, keep, base, from, middle),
+                          new Scan(plan, keep, base, middle, to));
+            }
+        }
+
+        /** This {@link java.io.Serializable}'s version number. */
+        private static final long serialVersionUID = 1L;
+        /** The {@link QueryPlan} to be evaluated. */
+        final private QueryPlan plan;
+        /** Receives the outcome for each slot. */
+        final private boolean[] keep;
+        /** The slot corresponding to the first element of {@link #keep}. */
+        final private int base;
+        /** The first row to be checked. */
+        final private int from;
+        /** The row following the last one to be checked. */
+        final private int to;
+
+    }
+
+    /** Every {@link Stat}, in declaration order. */
+    final private static Stat[] STATS = Stat.values();
+    /** The initial number of rows of each column. */
+    final private static int INITIALCAPACITY = 16;
+
+    /** The number of rows in use. */
+    private int size;
+    /** The slot of each user. */
+    private Map<Integer, Integer> slotOf = new HashMap<Integer, Integer>();
+    /** The bitmap of every slot in use. */
+    private BitSet live = new BitSet();
+    /** The column of user identifiers. */
+    private int[] userIds = new int[INITIALCAPACITY];
+    /** The column of latitudes, holding NaN for missing locations. */
+    private double[] latitudes = new double[INITIALCAPACITY];
+    /** The column of longitudes, holding NaN for missing locations. */
+    private double[] longitudes = new double[INITIALCAPACITY];
+    /**
+     * One column per {@link Stat}, indexed by {@link Stat#ordinal}. Unset
+     * values hold {@link Profile#UNSETSTAT}.
+     */
+    private int[][] stats = new int[STATS.length][INITIALCAPACITY];
+    /** The tags of every slot. */
+    private TagIndex tags = new TagIndex();
+    /** The location cell of every slot. */
+    private GeoIndex geo = new GeoIndex();
+    /** The statistics the queries are planned on, kept up to date elsewhere. */
+    final private ChatStatistics statistics;
+
+    /**
+     * Doubles the capacity of every column.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private void grow() {
+        final int capacity = userIds.length * 2;
+        userIds = Arrays.copyOf(userIds, capacity);
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        for (int i = 0; i < STATS.length; ++i)
+            stats[i] = Arrays.copyOf(stats[i], capacity);
+    }
+
+    /**
+     * Computes the fraction of the rows represented by a number of them.
+     *
+     * @param count The number of rows in question.
+     * @return The fraction in question, or <code>0</code> if the snapshot is
+     * empty.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private double fraction(double count) {
+        return size == 0 ? 0 : Math.min(1, count / size);
+    }
+
+    /**
+     * Describes a range the way <code>/whois</code> expects it.
+     *
+     * @param min The minimum, or a negative infinity.
+     * @param max The maximum, or a positive infinity.
+     * @param uom The unit of measurement.
+     * @return The description in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static String label(double min, double max, String uom) {
+        final StringBuilder res = new StringBuilder();
+        final boolean hasMin = min > Integer.MIN_VALUE,
+                      hasMax = max < Integer.MAX_VALUE;
+        if (hasMin)
+            res.append((long)min);
+        if (!hasMin || !hasMax || min != max) {
+            res.append(',');
+            if (hasMax)
+                res.append((long)max);
+        }
+        return res.append(uom).toString();
+    }
+
+    /**
+     * Narrows down the slots which might pass a {@link QueryPlan} by running
+     * its index lookups, stopping as soon as no slot is left.
+     *
+     * @param plan The {@link QueryPlan} to be evaluated.
+     * @return The bitmap of the candidate slots.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private BitSet candidates(QueryPlan plan) {
+        if (plan.isEmpty())
+            return new BitSet();
+        final BitSet res = (BitSet)live.clone();
+        for (QueryPlan.Step step : plan.getLookups()) {
+            lookup(step, res);
+            if (res.isEmpty())
+                break;
+        }
+        return res;
+    }
+
+    /**
+     * Runs a single index lookup.
+     *
+     * @param step The lookup in question.
+     * @param candidates The candidate slots, which get narrowed down.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private void lookup(QueryPlan.Step step, BitSet candidates) {
+        switch (step.kind) {
+            case TAG:
+                final BitSet tagged = tags.bitmap(step.tag);
+                if (tagged == null)
+                    candidates.clear();
+                else
+                    candidates.and(tagged);
+                break;
+            case EXCLUDETAG:
+                final BitSet excluded = tags.bitmap(step.tag);
+                if (excluded != null)
+                    candidates.andNot(excluded);
+                break;
+            case AREA:
+                final BitSet nearby = new BitSet(size);
+                for (Integer slot : step.area)
+                    nearby.set(slot);
+                candidates.and(nearby);
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    "ChatSnapshot.lookup: " + step.kind + " is no lookup");
+        }
+    }
+
+    /**
+     * Evaluates a {@link Filter} against a window of rows. A few candidates
+     * are checked one by one, while many of them lead to a scan of the whole
+     * window.
+     *
+     * @param plan The {@link QueryPlan} to be evaluated.
+     * @param candidates The slots which survived the indexes.
+     * @param keep Receives the outcome for each slot, starting from
+     * <code>from</code>.
+     * @param from The first row to be checked.
+     * @param to The row following the last one to be checked.
+     * @param pool The {@link ForkJoinPool} to be used, or <code>null</code>
+     * to scan sequentially.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private void check(QueryPlan plan, BitSet candidates, boolean[] keep,
+                       int from, int to, ForkJoinPool pool) {
+        Arrays.fill(keep, false);
+        int count = 0;
+        for (int slot = candidates.nextSetBit(from); slot >= 0 && slot < to;
+             slot = candidates.nextSetBit(slot + 1)) {
+            keep[slot - from] = true;
+            ++count;
+        }
+        if ((long)count * DENSESCANRATIO > to - from) {
+            if (pool == null)
+                scan(plan, keep, from, from, to);
+            else
+                pool.invoke(new Scan(plan, keep, from, from, to));
+        } else
+            for (int slot = from; slot < to; ++slot)
+                if (keep[slot - from])
+                    keep[slot - from] = matches(plan, slot);
+    }
+
+    /**
+     * Runs the checks of a {@link QueryPlan} against a range of rows, one
+     * column at a time and in the planned order, stopping as soon as no row
+     * is left. The loops over the stat columns are free of branches on the
+     * data, so that the JIT compiler can vectorize them.
+     *
+     * @param plan The {@link QueryPlan} to be evaluated.
+     * @param keep Holds the slots which survived the indexes, and receives
+     * the outcome for each slot.
+     * @param base The slot corresponding to the first element of
+     * <code>keep</code>.
+     * @param from The first row to be checked.
+     * @param to The row following the last one to be checked.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private void scan(QueryPlan plan, boolean[] keep, int base, int from,
+                      int to) {
+        for (QueryPlan.Step step : plan.getChecks()) {
+            int survivors = 0;
+            if (step.kind == QueryPlan.Kind.STAT) {
+                final int[] column = stats[step.stat];
+                // unset values never match
+                final int min = Math.max(step.range.getMin(),
+                                         Profile.UNSETSTAT + 1),
+                          max = step.range.getMax();
+                for (int slot = from; slot < to; ++slot) {
+                    keep[slot - base] &= column[slot] >= min
+                                       & column[slot] <= max;
+                    survivors += keep[slot - base] ? 1 : 0;
+                }
+            } else
+                for (int slot = from; slot < to; ++slot)
+                    if (keep[slot - base]
+                        && (keep[slot - base] = plan.filter.withinDistance(
+                                latitudes[slot], longitudes[slot])))
+                        ++survivors;
+            if (survivors == 0)
+                return;
+        }
+    }
+
+    /**
+     * Runs the checks of a {@link QueryPlan} against a single row, in the
+     * planned order, stopping at the first failure.
+     *
+     * @param plan The {@link QueryPlan} to be evaluated.
+     * @param slot The row to be checked.
+     * @return <code>true</code> if the row passes, <code>false</code>
+     * otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private boolean matches(QueryPlan plan, int slot) {
+        for (QueryPlan.Step step : plan.getChecks())
+            if (!matches(plan, step, slot))
+                return false;
+        return true;
+    }
+
+    /**
+     * Runs a single check of a {@link QueryPlan} against a single row.
+     *
+     * @param plan The {@link QueryPlan} to be evaluated.
+     * @param step The check in question.
+     * @param slot The row to be checked.
+     * @return <code>true</code> if the row passes, <code>false</code>
+     * otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private boolean matches(QueryPlan plan, QueryPlan.Step step, int slot) {
+        if (step.kind == QueryPlan.Kind.STAT)
+            return stats[step.stat][slot] != Profile.UNSETSTAT
+                   && step.range.contains(stats[step.stat][slot]);
+        return plan.filter.withinDistance(latitudes[slot], longitudes[slot]);
+    }
+
+    /**
+     * Finds the located users closest to the {@linkplain Filter#getFrom
+     * origin} of a {@link Filter} among those passing it, keeping at most
+     * <code>k</code> of them in a max-heap ordered by {@linkplain
+     * Filter#proximity proximity} and then by slot. Since slots are visited in
+     * increasing order, each new one ranks after every equally distant one.
+     *
+     * @param filter The {@link Filter} to be evaluated.
+     * @param k The maximum number of results.
+     * @param pool The {@link ForkJoinPool} to be used, or <code>null</code>
+     * to scan sequentially.
+     * @return The identifiers of the users in question, nearest first. Ties
+     * are broken by order of arrival.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private int[] nearest(Filter filter, int k, ForkJoinPool pool) {
+        final QueryPlan plan = plan(filter);
+        final BitSet candidates = candidates(plan);
+        final boolean[] keep = new boolean[Math.min(size, WINDOW)];
+        final int capacity = Math.min(k, size);
+        final double[] keys = new double[capacity];
+        final int[] slots = new int[capacity];
+        int count = 0;
+        for (int from = 0; from < size; from += WINDOW) {
+            final int to = Math.min(from + WINDOW, size);
+            check(plan, candidates, keep, from, to, pool);
+            for (int slot = from; slot < to; ++slot) {
+                if (!keep[slot - from])
+                    continue;
+                final double key = filter.proximity(latitudes[slot],
+                                                    longitudes[slot]);
+                // unlocated users cannot be ranked
+                if (Double.isNaN(key))
+                    continue;
+                int i;
+                if (count < capacity)
+                    // sift up
+                    for (i = count++; i > 0 && keys[(i - 1) / 2] <= key;
+                         i = (i - 1) / 2) {
+                        keys[i] = keys[(i - 1) / 2];
+                        slots[i] = slots[(i - 1) / 2];
+                    }
+                else if (key < keys[0])
+                    // replace the farthest one and sift down
+                    for (i = 0; 2 * i + 1 < count;) {
+                        int child = 2 * i + 1;
+                        if (child + 1 < count
+                            && (keys[child + 1] > keys[child]
+                                || keys[child + 1] == keys[child]
+                                   && slots[child + 1] > slots[child]))
+                            ++child;
+                        if (keys[child] <= key)
+                            break;
+                        keys[i] = keys[child];
+                        slots[i] = slots[child];
+                        i = child;
+                    }
+                else
+                    continue;
+                keys[i] = key;
+                slots[i] = slot;
+            }
+        }
+        // nearest first
+        final Integer[] byKey = new Integer[count];
+        for (int i = 0; i < count; ++i)
+            byKey[i] = i;
+        Arrays.sort(byKey, (a, b) -> keys[a] != keys[b]
+                                     ? Double.compare(keys[a], keys[b])
+                                     : Integer.compare(slots[a], slots[b]));
+        final int[] res = new int[count];
+        for (int i = 0; i < count; ++i)
+            res[i] = userIds[slots[byKey[i]]];
+        return res;
+    }
+
+}
@@ -0,0 +1,400 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.telegram.telegrambots.meta.api.objects.Location;
+
+/**
+ * A <code>ChatStatistics</code> summarizes the {@link Profile} instances of a
+ * single chat: how many they are, how many of them use each tag, the {@link
+ * Histogram} of each {@link Stat} and how many located users fall within
+ * each cell of the {@link GeoIndex} grid. It is kept up to date by
+ * {@linkplain #update diffing} every new {@link Profile} against the one it
+ * replaces, so that it never needs a scan, and it is small enough to be
+ * {@linkplain #write written} along with the profiles of its chat.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ChatStatistics {
+
+    /** The version of the layout written by {@link #write}. */
+    final public static int LAYOUTVERSION = 1;
+
+    /**
+     * Accounts for a {@link Profile} being added or replaced.
+     *
+     * @param oldProfile The {@link Profile} being replaced, or
+     * <code>null</code> if there is none.
+     * @param newProfile The up-to-date {@link Profile}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized void update(Profile oldProfile, Profile newProfile) {
+        if (oldProfile == null)
+            ++profiles;
+        // tag sets ignore case, just like the tags themselves
+        if (oldProfile != null)
+            for (String tag : oldProfile.unmodifiableTags())
+                if (!newProfile.containsTag(tag))
+                    add(tags, TagIndex.key(tag), -1);
+        for (String tag : newProfile.unmodifiableTags())
+            if (oldProfile == null || !oldProfile.containsTag(tag))
+                add(tags, TagIndex.key(tag), 1);
+        for (int i = 0; i < STATS.length; ++i) {
+            final int oldValue = oldProfile == null
+                                 ? Profile.UNSETSTAT
+                                 : oldProfile.getStat(STATS[i]),
+                      newValue = newProfile.getStat(STATS[i]);
+            if (oldValue != newValue) {
+                histograms[i].remove(oldValue);
+                histograms[i].add(newValue);
+            }
+        }
+        final int oldCell = oldProfile == null ? NOCELL
+                                               : cell(oldProfile.location),
+                  newCell = cell(newProfile.location);
+        if (oldCell != newCell) {
+            if (oldCell != NOCELL)
+                add(cells, oldCell, -1);
+            if (newCell != NOCELL)
+                add(cells, newCell, 1);
+            located += (newCell == NOCELL ? 0 : 1)
+                       - (oldCell == NOCELL ? 0 : 1);
+        }
+    }
+
+    /**
+     * Gets the number of profiles in the chat.
+     *
+     * @return The number of profiles in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int profiles() {
+        return profiles;
+    }
+
+    /**
+     * Gets the number of profiles having a location.
+     *
+     * @return The number of profiles in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int located() {
+        return located;
+    }
+
+    /**
+     * Gets the number of cells of the {@link GeoIndex} grid holding at least
+     * a located profile.
+     *
+     * @return The number of cells in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int cells() {
+        return cells.size();
+    }
+
+    /**
+     * Gets the number of located profiles in the most crowded cell of the
+     * {@link GeoIndex} grid.
+     *
+     * @return The number of profiles in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int densestCell() {
+        int res = 0;
+        for (int count : cells.values())
+            res = Math.max(res, count);
+        return res;
+    }
+
+    /**
+     * Gets the number of profiles using a tag.
+     *
+     * @param tag The tag in question, in any case.
+     * @return The number of profiles in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int tagCount(String tag) {
+        return tags.getOrDefault(TagIndex.key(tag), 0);
+    }
+
+    /**
+     * Gets the number of different tags in use.
+     *
+     * @return The number of tags in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int distinctTags() {
+        return tags.size();
+    }
+
+    /**
+     * Gets the most used tags, most used first and then in alphabetical
+     * order.
+     *
+     * @param limit The maximum number of tags.
+     * @return The tags in question, lowercase, along with the number of
+     * profiles using each of them.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized List<Map.Entry<String, Integer>> topTags(int limit) {
+        final List<Map.Entry<String, Integer>> res =
+            new ArrayList<Map.Entry<String, Integer>>(tags.entrySet());
+        res.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                 .thenComparing(Map.Entry.comparingByKey()));
+        final List<Map.Entry<String, Integer>> top =
+            new ArrayList<Map.Entry<String, Integer>>();
+        for (Map.Entry<String, Integer> tag
+             : res.subList(0, Math.min(limit, res.size())))
+            top.add(Map.entry(tag.getKey(), tag.getValue()));
+        return top;
+    }
+
+    /**
+     * Gets the number of profiles having set a {@link Stat}.
+     *
+     * @param stat The {@link Stat} in question.
+     * @return The number of profiles in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int count(Stat stat) {
+        return histograms[stat.ordinal()].total();
+    }
+
+    /**
+     * Gets the number of profiles whose {@link Stat} falls within a range.
+     *
+     * @param stat The {@link Stat} in question.
+     * @param range The range in question.
+     * @return The number of profiles in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int count(Stat stat, IntRange range) {
+        return histograms[stat.ordinal()].count(range);
+    }
+
+    /**
+     * Gets a quantile of the values of a {@link Stat}.
+     *
+     * @see Histogram#quantile
+     * @param stat The {@link Stat} in question.
+     * @param fraction The fraction of the values less than or equal to the
+     * result, between <code>0</code> and <code>1</code>.
+     * @return The value in question, or {@link Profile#UNSETSTAT} if no
+     * profile has set the {@link Stat}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized int quantile(Stat stat, double fraction) {
+        return histograms[stat.ordinal()].quantile(fraction);
+    }
+
+    /**
+     * Estimates the number of profiles passing a {@link Filter}, assuming
+     * that its predicates are independent. Distances are only accounted for
+     * by the fraction of located profiles.
+     *
+     * @param filter The {@link Filter} in question.
+     * @return The number of profiles in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized long estimate(Filter filter) {
+        if (profiles == 0)
+            return 0;
+        double res = profiles;
+        for (String tag : filter.include())
+            res *= (double)tagCount(tag) / profiles;
+        for (String tag : filter.exclude())
+            res *= 1 - (double)tagCount(tag) / profiles;
+        for (int i = 0; i < STATS.length; ++i) {
+            final IntRange range = filter.statFilter(i);
+            if (range != null)
+                res *= (double)histograms[i].count(range) / profiles;
+        }
+        if (filter.isLocationNeeded())
+            res *= (double)located / profiles;
+        return Math.round(res);
+    }
+
+    /**
+     * Estimates the bytes taken by the columns and the tag bitmaps of the
+     * {@link ChatSnapshot} of the chat.
+     *
+     * @return The number of bytes in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized long footprint() {
+        return (long)profiles * ROWBYTES
+               + (long)tags.size() * ((profiles + Long.SIZE - 1) / Long.SIZE)
+                 * Long.BYTES;
+    }
+
+    /**
+     * Writes the statistics, so that they can be {@linkplain #read read}
+     * back.
+     *
+     * @param out The output to write to.
+     * @throws IOException The output failed.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized void write(DataOutput out) throws IOException {
+        out.writeInt(LAYOUTVERSION);
+        out.writeInt(STATS.length);
+        out.writeInt(profiles);
+        out.writeInt(located);
+        out.writeInt(tags.size());
+        for (Map.Entry<String, Integer> tag : tags.entrySet()) {
+            final byte[] bytes = tag.getKey().getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+            out.writeInt(tag.getValue());
+        }
+        for (Histogram histogram : histograms)
+            histogram.write(out);
+        out.writeInt(cells.size());
+        for (Map.Entry<Integer, Integer> cell : cells.entrySet()) {
+            out.writeInt(cell.getKey());
+            out.writeInt(cell.getValue());
+        }
+    }
+
+    /**
+     * Reads statistics previously {@linkplain #write written}.
+     *
+     * @param in The buffer to read from, starting at its position.
+     * @return The statistics in question.
+     * @throws IOException The layout is unknown or the buffer is truncated.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public static ChatStatistics read(ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != LAYOUTVERSION || in.getInt() != STATS.length)
+                throw new IOException("ChatStatistics.read: unknown layout");
+            final ChatStatistics res = new ChatStatistics();
+            res.profiles = in.getInt();
+            res.located = in.getInt();
+            for (int n = in.getInt(); n > 0; --n) {
+                final byte[] bytes = new byte[in.getShort()];
+                in.get(bytes);
+                res.tags.put(new String(bytes, StandardCharsets.UTF_8),
+                             in.getInt());
+            }
+            for (Histogram histogram : res.histograms)
+                histogram.read(in);
+            for (int n = in.getInt(); n > 0; --n)
+                res.cells.put(in.getInt(), in.getInt());
+            return res;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("ChatStatistics.read: truncated statistics",
+                                  e);
+        }
+    }
+
+    /** Every {@link Stat}, in order. */
+    final private static Stat[] STATS = Stat.values();
+    /** The cell of a {@link Profile} without a location. */
+    final private static int NOCELL = -1;
+    /** The bytes taken by a row of the columns of a {@link ChatSnapshot}. */
+    final private static int ROWBYTES =
+        Integer.BYTES + 2 * Double.BYTES + STATS.length * Integer.BYTES;
+
+    /** The number of profiles. */
+    private int profiles;
+    /** The number of profiles having a location. */
+    private int located;
+    /** The number of profiles using each tag, by lowercase tag. */
+    private Map<String, Integer> tags = new HashMap<String, Integer>();
+    /**
+     * The distribution of the values of each {@link Stat}, indexed by {@link
+     * Stat#ordinal}.
+     */
+    private Histogram[] histograms = histograms();
+    /** The number of located profiles in each non-empty cell. */
+    private Map<Integer, Integer> cells = new HashMap<Integer, Integer>();
+
+    /**
+     * Creates an empty {@link Histogram} for each {@link Stat}.
+     *
+     * @return The histograms in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static Histogram[] histograms() {
+        final Histogram[] res = new Histogram[STATS.length];
+        for (int i = 0; i < STATS.length; ++i)
+            res[i] = new Histogram(STATS[i]);
+        return res;
+    }
+
+    /**
+     * Gets the cell of the {@link GeoIndex} grid containing a location.
+     *
+     * @param location The location in question, or <code>null</code>.
+     * @return The cell in question, or {@link #NOCELL}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static int cell(Location location) {
+        return location == null
+               ? NOCELL
+               : GeoIndex.cell(location.getLatitude(),
+                               location.getLongitude());
+    }
+
+    /**
+     * Adds to a counter, dropping it once it reaches zero.
+     *
+     * @param <K> The type of the keys of the counters.
+     * @param counters The counters in question.
+     * @param key The key of the counter.
+     * @param delta The amount to add.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static <K> void add(Map<K, Integer> counters, K key, int delta) {
+        counters.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+}
@@ -0,0 +1,93 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+/**
+ * A <code>Cursor</code> remembers where a paginated {@link Filter} query
+ * stopped, so that its next page can be read by resuming the scan of a
+ * {@link ChatSnapshot} instead of starting over. A <code>Cursor</code> is
+ * only modified by the {@link ChatSnapshot} it is used with, which guards it,
+ * so the state of a shared <code>Cursor</code> must be {@linkplain
+ * #Cursor(Cursor) copied} before it is used.
+ *
+ * @see ChatSnapshot#page
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Cursor {
+
+    /**
+     * Instantiates a new {@link Cursor} pointing to the first page of a
+     * query.
+     *
+     * @param filter The {@link Filter} of the query.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Cursor(Filter filter) {
+        this.filter = filter;
+        remaining = filter.getLimit() > 0 ? filter.getLimit()
+                                          : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Instantiates a new {@link Cursor} pointing to the same page as another
+     * one. The two can then be moved forward independently.
+     *
+     * @param other The {@link Cursor} to be copied.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Cursor(Cursor other) {
+        filter = other.filter;
+        nextSlot = other.nextSlot;
+        remaining = other.remaining;
+        ranked = other.ranked; // never modified
+        offset = other.offset;
+        exhausted = other.exhausted;
+    }
+
+    /**
+     * Gets the {@link Filter} of the query.
+     *
+     * @see #filter
+     * @return The {@link Filter} in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Checks whether every page has already been read.
+     *
+     * @return <code>true</code> if there are no more pages, <code>false
+     * </code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /** The {@link Filter} of the query. */
+    final private Filter filter;
+    /** The first slot which has not been scanned yet. */
+    int nextSlot;
+    /** The number of results which can still be returned. */
+    int remaining;
+    /**
+     * The ranked results of a query for the nearest profiles, or <code>null
+     * </code> if they have not been computed (yet).
+     */
+    int[] ranked;
+    /** The number of {@link #ranked} results already returned. */
+    int offset;
+    /** Whether every page has already been read. */
+    boolean exhausted;
+
+}
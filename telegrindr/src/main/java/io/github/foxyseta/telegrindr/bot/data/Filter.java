@@ -2,18 +2,19 @@ package io.github.foxyseta.telegrindr.bot.data;
 
 import static java.lang.Math.*;
 
-import java.util.EnumMap;
 import java.util.function.Predicate;
-import java.util.HashSet;
-import java.util.regex.Matcher;
+import java.util.LinkedHashSet;
+import java.util.Locale;
 import java.util.regex.Pattern;
-import java.util.SortedSet;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.telegram.telegrambots.meta.api.objects.Location;
 
 /**
  * A <code>Filter</code> can {@link #test} whether a {@link Profile}
- * can be of any interest to the user.
+ * can be of any interest to the user. A <code>Filter</code> is never modified
+ * after its construction, so it can be shared among threads.
  *
  * @author FoxySeta
  * @version 1.0.0
@@ -25,6 +26,8 @@ public class Filter implements Predicate<Profile> {
     final public static String RANGEARGUMENTREGEX = "(\\d*)(,?)(\\d*)(\\w+)"; 
     /** The regex for any tag-related preference. */
     final public static String TAGARGUMENTREGEX = "([+-]?)#([0-9A-Za-z]+).*";
+    /** The regex representing the maximum number of results. */
+    final public static String LIMITARGUMENTREGEX = "top(\\d+)";
     /**
      * The unit of measurement for distances between one {@link Location} and
      * another.
@@ -44,13 +47,25 @@ public class Filter implements Predicate<Profile> {
      */
     final public static Pattern TAGARGUMENTPATTERN =
         Pattern.compile(TAGARGUMENTREGEX);
+    /**
+     * The {@link Pattern} generated from the {@linkplain #LIMITARGUMENTREGEX
+     * limits' regex}.
+     */
+    final public static Pattern LIMITARGUMENTPATTERN =
+        Pattern.compile(LIMITARGUMENTREGEX);
     /** The average earth radius in kilometers. */
     final public static double EARTHRADIUS = 6371.005076123;
     /**
-     * The {@link Location} from which all {@linkplain #distance distances}
-     * are calculated.
+     * The margin in degrees added to each side of the bounding box of a
+     * distance query, so that rounding errors never exclude a point lying on
+     * its border.
      */
-    public Location from;
+    final public static double BOUNDINGBOXMARGIN = 1e-9;
+    /**
+     * The step in degrees to which the coordinates of {@link #from} are
+     * rounded in the {@linkplain #getKey canonical form} of a {@link Filter}.
+     */
+    final public static double KEYORIGINSTEP = 1e-4;
 
     /**
      * Instantiates a new {@link Filter}.
@@ -62,9 +77,75 @@ public class Filter implements Predicate<Profile> {
      * @since 1.0.0
      */
     public Filter(String[] arguments, Location from) {
+        final Set<String> include = new LinkedHashSet<String>(),
+                          exclude = new LinkedHashSet<String>();
+        final ArgumentParser parser = new ArgumentParser();
         for (String argument : arguments)
-            parse(argument);
+            parse(parser, argument, include, exclude);
+        this.include = include.toArray(new String[include.size()]);
+        this.exclude = exclude.toArray(new String[exclude.size()]);
         this.from = from;
+        // distance query context
+        originLat = from == null ? Double.NaN : from.getLatitude();
+        originLon = from == null ? Double.NaN : from.getLongitude();
+        cosOriginLat = cos(toRadians(originLat));
+        final double minAngle = minDistance / EARTHRADIUS,
+                     maxAngle = maxDistance / EARTHRADIUS;
+        minHaversine = minAngle <= 0 ? Double.NEGATIVE_INFINITY
+                                     : haversine(min(minAngle, PI));
+        maxHaversine = maxAngle >= PI ? Double.POSITIVE_INFINITY
+                                      : haversine(maxAngle);
+        latBound = maxAngle >= PI ? Double.POSITIVE_INFINITY
+                                  : toDegrees(maxAngle) + BOUNDINGBOXMARGIN;
+        // near a pole, every meridian gets crossed
+        final double ratio = sin(maxAngle) / cosOriginLat;
+        lonBound = maxAngle >= PI || abs(originLat) + latBound >= 90
+                   || ratio >= 1 ? Double.POSITIVE_INFINITY
+                                 : toDegrees(asin(ratio)) + BOUNDINGBOXMARGIN;
+        key = key();
+    }
+
+    /**
+     * Gets the {@link Location} from which all {@linkplain #distance
+     * distances} are calculated.
+     *
+     * @see #from
+     * @return The {@link Location} in question, or <code>null</code>.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Location getFrom() {
+        return from;
+    }
+
+    /**
+     * Gets the maximum number of results. When {@link #from} is known, the
+     * nearest results are preferred, otherwise the first ones are.
+     *
+     * @see #limit
+     * @return The limit in question, or <code>0</code> if there is none.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Gets the canonical form of this {@link Filter}. Two filters sharing the
+     * same key select the same profiles in the same order, except for those
+     * lying within {@link #KEYORIGINSTEP} of the border of the distance range.
+     *
+     * @see #key
+     * @return The key in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public String getKey() {
+        return key;
     }
 
     /**
@@ -80,20 +161,25 @@ public class Filter implements Predicate<Profile> {
     @Override
     public boolean test(Profile profile) {
         // stat filters
-        for (Stat stat : Stat.values())
-            if (statFilters.containsKey(stat) && (!profile.containsStat(stat)
-                || !statFilters.get(stat).contains(profile.getStat(stat))))
-                return false;
+        for (int i = 0; i < STATS.length; ++i) {
+            final IntRange range = statFilters[i];
+            if (range != null) {
+                final int value = profile.getStat(STATS[i]);
+                if (value == Profile.UNSETSTAT || !range.contains(value))
+                    return false;
+            }
+        }
         // distance filter
-        if (distanceFilter != null &&
-            !distanceFilter.contains(distance(from, profile.location)))
+        if (distanceFilter != null && (profile.location == null
+            || !withinDistance(profile.location.getLatitude(),
+                               profile.location.getLongitude())))
             return false;
         // tags query
-        final SortedSet<String> tags = profile.unmodifiableTags();
-        if (!tags.containsAll(include))
-            return false;
+        for (String tag : include)
+            if (!profile.containsTag(tag))
+                return false;
         for (String tag : exclude)
-            if (tags.contains(tag))
+            if (profile.containsTag(tag))
                 return false;
         return true;
     }
@@ -114,41 +200,130 @@ public class Filter implements Predicate<Profile> {
     }
 
     /**
-     * Contains the {@linkplain #RANGEARGUMENTPATTERN stat-related
-     * preferences}.
+     * Gets the range required for a certain {@link Stat}.
+     *
+     * @param ordinal The {@link Stat#ordinal} of the {@link Stat}.
+     * @return The {@link IntRange} in question, or <code>null</code> if
+     * the {@link Stat} is not filtered.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
      */
-    private EnumMap<Stat, Range<Integer>> statFilters =
-        new EnumMap<Stat, Range<Integer>>(Stat.class);
+    IntRange statFilter(int ordinal) {
+        return statFilters[ordinal];
+    }
+
     /**
-     * Contains the {@linkplain #RANGEARGUMENTPATTERN distance-related
-     * filters.
+     * Gets the minimum distance in kilometers.
+     *
+     * @return The minimum distance, or {@link Double#NEGATIVE_INFINITY}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
      */
-    private Range<Double> distanceFilter;
-    /** A whitelist for tags. */
-    private HashSet<String> include = new HashSet<String>();
-    /** A blacklist for tags. */
-    private HashSet<String> exclude = new HashSet<String>();
-    
+    double minDistance() {
+        return minDistance;
+    }
+
+    /**
+     * Gets the maximum distance in kilometers.
+     *
+     * @return The maximum distance, or {@link Double#POSITIVE_INFINITY}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    double maxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * Gets the tags every {@link Profile} must have.
+     *
+     * @return The {@link #include}d tags.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    String[] include() {
+        return include;
+    }
+
     /**
-     * Calculates the distance between two instances of {@link Location} using
-     * the {@linkplain <a
+     * Gets the tags no {@link Profile} can have.
+     *
+     * @return The {@link #exclude}d tags.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    String[] exclude() {
+        return exclude;
+    }
+
+    /**
+     * Checks whether a point lies within the distance range of this {@link
+     * Filter}. Points outside of the bounding box of the range are rejected
+     * straight away. For the others, the haversine of the central angle is
+     * compared against the precomputed haversines of the range's extremes,
+     * which avoids the inverse trigonometric functions of {@link #distance}.
+     *
+     * @param lat The latitude of the point.
+     * @param lon The longitude of the point.
+     * @return <code>true</code> if the point is within range, <code>false
+     * </code> otherwise or if either the point or {@link #from} is unknown.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    boolean withinDistance(double lat, double lon) {
+        // bounding box (NaN coordinates fail here)
+        if (!(abs(lat - originLat) <= latBound)
+            || !(abs(IEEEremainder(lon - originLon, 360)) <= lonBound))
+            return false;
+        final double sinLat = sin(toRadians(lat - originLat) / 2),
+                     sinLon = sin(toRadians(lon - originLon) / 2),
+                     a = sinLat * sinLat
+                       + cosOriginLat * cos(toRadians(lat)) * sinLon * sinLon;
+        return minHaversine <= a && a <= maxHaversine;
+    }
+
+    /**
+     * Ranks a point by its distance from {@link #from}. The result grows
+     * along with the distance, without being one.
+     *
+     * @param lat The latitude of the point.
+     * @param lon The longitude of the point.
+     * @return The haversine of the central angle between the point and
+     * {@link #from}, or NaN if either of them is unknown.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    double proximity(double lat, double lon) {
+        final double sinLat = sin(toRadians(lat - originLat) / 2),
+                     sinLon = sin(toRadians(lon - originLon) / 2);
+        return sinLat * sinLat
+               + cosOriginLat * cos(toRadians(lat)) * sinLon * sinLon;
+    }
+
+    /**
+     * Calculates the distance between two points using the {@linkplain <a
      * href="https://rosettacode.org/wiki/Haversine_formula"> haversine
      * formula</a>}.
      *
-     * @param l1 The first {@link Location}.
-     * @param l2 The second {@link Location}.
-     * @return The distance between <code>l1</code> and <code>l2</code> in
-     * kilometers.
+     * @param lat1 The latitude of the first point.
+     * @param lon1 The longitude of the first point.
+     * @param lat2 The latitude of the second point.
+     * @param lon2 The longitude of the second point.
+     * @return The distance between the two points in kilometers.
      * @author FoxySeta
      * @version 1.0.0
      * @since 1.0.0
      */
-    private Double distance(Location l1, Location l2) {
-        final double lat1 = l1.getLatitude(),
-                     lon1 = l1.getLongitude(),
-                     lat2 = l2.getLatitude(),
-                     lon2 = l2.getLongitude(),
-                     deltaLat = toRadians(lat2 - lat1),
+    static double distance(double lat1, double lon1, double lat2,
+                           double lon2) {
+        final double deltaLat = toRadians(lat2 - lat1),
                      deltaLon = toRadians(lon2 - lon1),
                      a = sin(deltaLat / 2) * sin(deltaLat / 2)
                        + cos(toRadians(lat1)) * cos(toRadians(lat2))
@@ -157,64 +332,167 @@ public class Filter implements Predicate<Profile> {
         return EARTHRADIUS * c;
     }
 
+    /** Every {@link Stat}, in declaration order. */
+    final private static Stat[] STATS = Stat.values();
+    /**
+     * The {@link Location} from which all {@linkplain #distance distances}
+     * are calculated.
+     */
+    final private Location from;
+    /**
+     * Contains the {@linkplain #RANGEARGUMENTPATTERN stat-related
+     * preferences}, indexed by {@link Stat#ordinal}.
+     */
+    final private IntRange[] statFilters = new IntRange[STATS.length];
+    /**
+     * Contains the {@linkplain #RANGEARGUMENTPATTERN distance-related
+     * filters.
+     */
+    private Range<Double> distanceFilter;
+    /** The maximum number of results, or <code>0</code>. */
+    private int limit;
+    /** The unboxed minimum of the {@link #distanceFilter}. */
+    private double minDistance = Double.NEGATIVE_INFINITY;
+    /** The unboxed maximum of the {@link #distanceFilter}. */
+    private double maxDistance = Double.POSITIVE_INFINITY;
+    /** The latitude of {@link #from}, or NaN. */
+    final private double originLat;
+    /** The longitude of {@link #from}, or NaN. */
+    final private double originLon;
+    /** The cosine of {@link #originLat}. */
+    final private double cosOriginLat;
+    /**
+     * The half-height in degrees of the bounding box of the distance range.
+     */
+    final private double latBound;
+    /**
+     * The half-width in degrees of the bounding box of the distance range.
+     */
+    final private double lonBound;
+    /** The {@linkplain #haversine haversine} of the minimum central angle. */
+    final private double minHaversine;
+    /** The {@linkplain #haversine haversine} of the maximum central angle. */
+    final private double maxHaversine;
+    /** The canonical form of this {@link Filter}. */
+    final private String key;
+    /** A whitelist for tags. */
+    final private String[] include;
+    /** A blacklist for tags. */
+    final private String[] exclude;
+    
+    /**
+     * Calculates the haversine of an angle.
+     *
+     * @param angle The angle in radians.
+     * @return <code>sin²(angle / 2)</code>.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static double haversine(double angle) {
+        final double s = sin(angle / 2);
+        return s * s;
+    }
+
     /**
-     * A new parser based on {@link java.lang.Integer#parseInt} which can also
-     * handle empty strings.
-     * @param s The string to be parsed.
-     * @return The parsing result, or <code>null</code> if <code>s</code> is
-     * empty.
+     * Builds the canonical form of this {@link Filter}. Tags are sorted and
+     * case-folded, and {@link #from} only appears if it matters.
+     *
+     * @return The canonical form in question.
      * @author FoxySeta
      * @version 1.0.0
      * @since 1.0.0
      */
-    private Integer parseInt(String s) {
-        return s.isEmpty() ? null : Integer.parseInt(s);
+    private String key() {
+        final StringBuilder res = new StringBuilder();
+        for (int i = 0; i < STATS.length; ++i)
+            if (statFilters[i] != null)
+                res.append(STATS[i].uom()).append(statFilters[i].getMin())
+                   .append(',').append(statFilters[i].getMax()).append(' ');
+        if (distanceFilter != null)
+            res.append(DISTANCEUOM).append(minDistance).append(',')
+               .append(maxDistance).append(' ');
+        if (limit > 0)
+            res.append("top").append(limit).append(' ');
+        for (String tag : canonicalTags(include))
+            res.append('#').append(tag).append(' ');
+        for (String tag : canonicalTags(exclude))
+            res.append(EXCLUDETAGPREFIX).append('#').append(tag).append(' ');
+        if (from != null && (distanceFilter != null || limit > 0))
+            res.append('@').append(round(originLat / KEYORIGINSTEP))
+               .append(',').append(round(originLon / KEYORIGINSTEP));
+        return res.toString();
+    }
+
+    /**
+     * Sorts and case-folds a sequence of tags, dropping duplicates.
+     *
+     * @param tags The tags to be normalized.
+     * @return The normalized tags.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static Set<String> canonicalTags(String[] tags) {
+        final Set<String> res = new TreeSet<String>();
+        for (String tag : tags)
+            res.add(tag.toLowerCase(Locale.ROOT));
+        return res;
     }
 
     /**
      * Parses a single string representation of one of the user's preferences.
      * 
+     * @param parser The {@link ArgumentParser} to be used.
      * @param arg The string to be parsed.
+     * @param include Collects the {@link #include}d tags.
+     * @param exclude Collects the {@link #exclude}d tags.
      * @return <code>true</code> on success, <code>false</code> on failure.
      * @author FoxySeta
      * @version 1.0.0
      * @since 1.0.0
      */
-    private boolean parse(String arg) {
-        Matcher matcher = RANGEARGUMENTPATTERN.matcher(arg);
-        if (matcher.matches()) {
-            // min, max
-            final Integer min = parseInt(matcher.group(1)), max;
-            if (matcher.group(2).isEmpty()) // no delimitator
-                max = min; 
-            else
-                max = parseInt(matcher.group(3));
-            if (min == null || max == null || min <= max) {
-                // uom
-                final String uom = matcher.group(4);
-                if (DISTANCEUOM.equals(uom)) {
-                    distanceFilter = new Range<Double>(
-                        min == null ? null : (double)min,
-                        max == null ? null : (double)max);
+    private boolean parse(ArgumentParser parser, String arg,
+                          Set<String> include, Set<String> exclude) {
+        switch (parser.parseWhois(arg)) {
+            case LIMIT:
+                try {
+                    limit = parser.getValue();
                     return true;
+                } catch (NumberFormatException e) {
+                    return false;
                 }
-                for (Stat stat : Stat.values())
-                    if (stat.uom().equals(uom)) {
-                        statFilters.put(stat, new Range<Integer>(min, max));
+            case RANGE:
+                // min, max
+                final Integer min = parser.getValue(), max = parser.getMax();
+                if (min == null || max == null || min <= max) {
+                    // uom
+                    if (parser.hasUnit(DISTANCEUOM)) {
+                        distanceFilter = new Range<Double>(
+                            min == null ? null : (double)min,
+                            max == null ? null : (double)max);
+                        minDistance = min == null ? Double.NEGATIVE_INFINITY
+                                                  : min;
+                        maxDistance = max == null ? Double.POSITIVE_INFINITY
+                                                  : max;
                         return true;
                     }
-            }
-            return false;
-        }
-        matcher = TAGARGUMENTPATTERN.matcher(arg);
-        if (matcher.matches()) {
-            String tag = matcher.group(2);
-            if (matcher.group(1).equals(EXCLUDETAGPREFIX))
-                exclude.add(tag);
-            else
-                include.add(tag);
+                    final Stat stat = parser.getStat();
+                    if (stat != null) {
+                        statFilters[stat.ordinal()] = IntRange.of(min, max);
+                        return true;
+                    }
+                }
+                return false;
+            case TAG:
+                if (parser.isNegated())
+                    exclude.add(parser.getTag());
+                else
+                    include.add(parser.getTag());
+                return false;
+            default:
+                return false;
         }
-        return false;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import static java.lang.Math.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.telegram.telegrambots.meta.api.objects.Location;
+
+/**
+ * A <code>GeoIndex</code> buckets the users of a single chat into a grid of
+ * latitude/longitude cells, so that the {@linkplain Profile profiles} near a
+ * given {@link Location} can be found without visiting every other one.
+ * Users are identified by their {@linkplain ChatSnapshot slot}.
+ * <code>GeoIndex</code> is not thread-safe: its {@link ChatSnapshot} guards
+ * it.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class GeoIndex {
+
+    /** The side of a single cell in degrees. */
+    final public static double CELLSIZE = 0.1;
+    /** The number of cells along a meridian. */
+    final public static int LATCELLS = (int)ceil(180 / CELLSIZE);
+    /** The number of cells along a parallel. */
+    final public static int LONCELLS = (int)ceil(360 / CELLSIZE);
+    /**
+     * The maximum number of cells a single {@linkplain #near query} is
+     * allowed to visit before giving up on the index.
+     */
+    final public static int MAXVISITEDCELLS = 4096;
+
+    /**
+     * Adds, moves or removes a user according to their latest {@link
+     * Location}.
+     *
+     * @param slot The slot of the user.
+     * @param location The user's current {@link Location}, or <code>null
+     * </code> to remove them from the index.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public void update(Integer slot, Location location) {
+        final Integer newCell = location == null ? null : cell(
+            location.getLatitude(), location.getLongitude());
+        final Integer oldCell = newCell == null ? cellOf.remove(slot)
+                                                : cellOf.put(slot, newCell);
+        if (oldCell != null && !oldCell.equals(newCell)) {
+            final Set<Integer> slots = cells.get(oldCell);
+            slots.remove(slot);
+            if (slots.isEmpty())
+                cells.remove(oldCell);
+        }
+        if (newCell != null)
+            cells.computeIfAbsent(newCell, c -> new HashSet<Integer>())
+                 .add(slot);
+    }
+
+    /**
+     * Gets the users who might be within a certain distance from a given
+     * {@link Location}. The result is a superset of the actual answer, since
+     * whole cells are returned.
+     *
+     * @param origin The center of the search.
+     * @param radius The maximum distance in kilometers.
+     * @return The slots of the candidate users, or <code>null</code> if the
+     * area is so wide that a full scan would be cheaper.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Collection<Integer> near(Location origin, double radius) {
+        final double lat = origin.getLatitude(),
+                     lon = origin.getLongitude(),
+                     angle = radius / Filter.EARTHRADIUS,
+                     deltaLat = toDegrees(angle);
+        if (angle >= PI)
+            return null;
+        final double minLat = lat - deltaLat, maxLat = lat + deltaLat;
+        final int minRow = row(max(minLat, -90)), maxRow = row(min(maxLat, 90));
+        // near a pole, every meridian gets crossed
+        final double ratio = sin(angle) / cos(toRadians(lat));
+        final int minColumn, maxColumn;
+        if (minLat <= -90 || maxLat >= 90 || ratio >= 1) {
+            minColumn = 0;
+            maxColumn = LONCELLS - 1;
+        } else {
+            final double deltaLon = toDegrees(asin(ratio));
+            minColumn = (int)floor((lon - deltaLon + 180) / CELLSIZE);
+            maxColumn = (int)floor((lon + deltaLon + 180) / CELLSIZE);
+        }
+        final int columns = min(maxColumn - minColumn + 1, LONCELLS);
+        if ((long)(maxRow - minRow + 1) * columns > MAXVISITEDCELLS)
+            return null;
+        final Collection<Integer> res = new ArrayList<Integer>();
+        for (int row = minRow; row <= maxRow; ++row)
+            for (int i = 0; i < columns; ++i) {
+                // columns wrap around the antimeridian
+                final int column = floorMod(minColumn + i, LONCELLS);
+                final Set<Integer> slots = cells.get(row * LONCELLS + column);
+                if (slots != null)
+                    res.addAll(slots);
+            }
+        return res;
+    }
+
+    /** The slots in each non-empty cell. */
+    private Map<Integer, Set<Integer>> cells =
+        new HashMap<Integer, Set<Integer>>();
+    /** The cell of each indexed slot. */
+    private Map<Integer, Integer> cellOf = new HashMap<Integer, Integer>();
+
+    /**
+     * Gets the row of the cell containing a certain latitude.
+     *
+     * @param lat The latitude in degrees.
+     * @return The row index.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static int row(double lat) {
+        return min((int)floor((lat + 90) / CELLSIZE), LATCELLS - 1);
+    }
+
+    /**
+     * Gets the cell containing a certain point.
+     *
+     * @param lat The latitude in degrees.
+     * @param lon The longitude in degrees.
+     * @return The cell key.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    static int cell(double lat, double lon) {
+        final int column = floorMod((int)floor((lon + 180) / CELLSIZE),
+                                    LONCELLS);
+        return row(lat) * LONCELLS + column;
+    }
+
+}
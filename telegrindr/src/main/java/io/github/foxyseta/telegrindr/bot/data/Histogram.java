@@ -0,0 +1,173 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A <code>Histogram</code> counts how many times each value of a {@link Stat}
+ * occurs, so that the number of values within any {@link IntRange} can be
+ * told without a scan. Since the valid values of every {@link Stat} are a few
+ * hundred at most, each value gets its own bucket and the counts are exact.
+ * Values outside of the {@link Stat}'s interval are counted by the nearest
+ * bucket.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class Histogram {
+
+    /**
+     * Instantiates a new, empty {@link Histogram}.
+     *
+     * @param stat The {@link Stat} whose values are counted.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Histogram(Stat stat) {
+        min = stat.min();
+        counts = new int[stat.max() - stat.min() + 1];
+    }
+
+    /**
+     * Counts a value. Unset values are ignored.
+     *
+     * @param value The value in question, or {@link Profile#UNSETSTAT}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public void add(int value) {
+        if (value != Profile.UNSETSTAT) {
+            ++counts[bucket(value)];
+            ++total;
+        }
+    }
+
+    /**
+     * Stops counting a value previously {@linkplain #add added}. Unset values
+     * are ignored.
+     *
+     * @param value The value in question, or {@link Profile#UNSETSTAT}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public void remove(int value) {
+        if (value != Profile.UNSETSTAT) {
+            --counts[bucket(value)];
+            --total;
+        }
+    }
+
+    /**
+     * Gets the number of values counted.
+     *
+     * @return The number of set values.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public int total() {
+        return total;
+    }
+
+    /**
+     * Counts the values within a range.
+     *
+     * @param range The range in question.
+     * @return The number of values in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public int count(IntRange range) {
+        if (range.getMax() < min || range.getMin() > min + counts.length - 1)
+            return 0;
+        int res = 0;
+        for (int i = bucket(range.getMin()), last = bucket(range.getMax());
+             i <= last; ++i)
+            res += counts[i];
+        return res;
+    }
+
+    /**
+     * Finds the smallest value such that at least a certain fraction of the
+     * counted values are less than or equal to it.
+     *
+     * @param fraction The fraction in question, between <code>0</code> and
+     * <code>1</code>.
+     * @return The value in question, or {@link Profile#UNSETSTAT} if nothing
+     * is counted.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public int quantile(double fraction) {
+        if (total == 0)
+            return Profile.UNSETSTAT;
+        final long rank = Math.max(1, (long)Math.ceil(fraction * total));
+        long seen = 0;
+        int i = 0;
+        while ((seen += counts[i]) < rank)
+            ++i;
+        return min + i;
+    }
+
+    /**
+     * Writes the counts, so that they can be {@linkplain #read read} back.
+     *
+     * @param out The output to write to.
+     * @throws IOException The output failed.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(counts.length);
+        for (int count : counts)
+            out.writeInt(count);
+    }
+
+    /**
+     * Replaces the counts with the ones previously {@linkplain #write
+     * written}.
+     *
+     * @param in The buffer to read from, starting at its position.
+     * @throws IOException The buckets do not match the {@link Stat}.
+     * @throws java.nio.BufferUnderflowException The buffer is truncated.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    void read(ByteBuffer in) throws IOException {
+        if (in.getInt() != counts.length)
+            throw new IOException("Histogram.read: unknown buckets");
+        total = 0;
+        for (int i = 0; i < counts.length; ++i)
+            total += counts[i] = in.getInt();
+    }
+
+    /** The value counted by the first bucket. */
+    final private int min;
+    /** The count of each value, starting from {@link #min}. */
+    final private int[] counts;
+    /** The number of values counted. */
+    private int total;
+
+    /**
+     * Finds the bucket of a value.
+     *
+     * @param value The value in question.
+     * @return The index of the bucket in {@link #counts}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private int bucket(int value) {
+        return (int)Math.max(0, Math.min((long)value - min, counts.length - 1));
+    }
+
+}
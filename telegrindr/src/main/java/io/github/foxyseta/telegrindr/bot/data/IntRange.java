@@ -0,0 +1,97 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+/**
+ * An <code>IntRange</code> is an immutable {@link Range} of primitive
+ * integers, whose {@link #contains} never boxes its argument. Missing
+ * extremes are represented by {@link Integer#MIN_VALUE} and {@link
+ * Integer#MAX_VALUE}.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class IntRange {
+
+    /**
+     * Instantiates a new {@link IntRange}.
+     *
+     * @param min The first extreme.
+     * @param max The second extreme.
+     * @throws IllegalArgumentException The first extreme is greater than the
+     * second.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public IntRange(int min, int max) {
+        if (min > max)
+            throw new IllegalArgumentException(
+                "IntRange.IntRange: min (" + min + ") > max (" + max + ")"
+            );
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Instantiates a new {@link IntRange} from extremes which might be
+     * missing.
+     *
+     * @param min The first extreme, or <code>null</code>.
+     * @param max The second extreme, or <code>null</code>.
+     * @return The new {@link IntRange}.
+     * @throws IllegalArgumentException The first extreme is greater than the
+     * second.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public static IntRange of(Integer min, Integer max) {
+        return new IntRange(min == null ? Integer.MIN_VALUE : min,
+                            max == null ? Integer.MAX_VALUE : max);
+    }
+
+    /**
+     * Gets the first extreme.
+     *
+     * @see #min
+     * @return The first extreme.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Gets the second extreme.
+     *
+     * @see #max
+     * @return The second extreme.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Checks whether the {@link IntRange} contains the given value.
+     * @param x Value to be checked.
+     * @return <code>true</code> if the {@link IntRange} contains the value,
+     * <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public boolean contains(int x) {
+        return min <= x && x <= max;
+    }
+
+    /** The first extreme. */
+    final private int min;
+    /** The second extreme. */
+    final private int max;
+
+}
@@ -1,10 +1,18 @@
 package io.github.foxyseta.telegrindr.bot.data;
 
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.Map.Entry;
 import java.util.regex.Pattern;
 import org.telegram.telegrambots.meta.api.objects.Location;
 import org.telegram.telegrambots.meta.api.objects.User;
@@ -28,6 +36,8 @@ public class Profile implements java.io.Serializable {
      * regex}.
      */
     final public static Pattern EMOJIPATTERN = Pattern.compile(EMOJIREGEX);
+    /** The value returned by {@link #getStat} when a {@link Stat} is unset. */
+    final public static int UNSETSTAT = Integer.MIN_VALUE;
 
     /** The {@link User} who set up this {@link Profile}. */
     public User user;
@@ -46,6 +56,67 @@ public class Profile implements java.io.Serializable {
         this.user = user;
     }
 
+    /**
+     * Instantiates a copy of a {@link Profile}, which can then be modified
+     * without affecting the original. The {@link User} and the {@link
+     * Location} are shared.
+     * 
+     * @param other The {@link Profile} to be copied.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Profile(Profile other) {
+        user = other.user;
+        location = other.location;
+        emoji = other.emoji;
+        stats = other.stats.clone();
+        tags = new TreeSet<String>(other.tags);
+    }
+
+    /**
+     * Checks whether a string is a single emoji (or another symbol), exactly
+     * as {@link #EMOJIPATTERN} would, but without any regex.
+     *
+     * @param s The string to be checked.
+     * @return <code>true</code> if <code>s</code> is a single code point which
+     * is neither a letter, a number, a punctuation mark nor a separator,
+     * <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public static boolean isEmoji(String s) {
+        if (s.isEmpty())
+            return false;
+        final int c = s.codePointAt(0);
+        if (Character.charCount(c) != s.length())
+            return false;
+        switch (Character.getType(c)) {
+            case Character.UPPERCASE_LETTER:
+            case Character.LOWERCASE_LETTER:
+            case Character.TITLECASE_LETTER:
+            case Character.MODIFIER_LETTER:
+            case Character.OTHER_LETTER:
+            case Character.DECIMAL_DIGIT_NUMBER:
+            case Character.LETTER_NUMBER:
+            case Character.OTHER_NUMBER:
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+            case Character.SPACE_SEPARATOR:
+            case Character.LINE_SEPARATOR:
+            case Character.PARAGRAPH_SEPARATOR:
+                return false;
+            default:
+                return true;
+        }
+    }
+
     /**
      * Gets the current emoji.
      *
@@ -70,10 +141,11 @@ public class Profile implements java.io.Serializable {
      * @since 1.0.0
      */
     public void setEmoji(String emoji) {
-        if (!EMOJIPATTERN.matcher(emoji).matches())
+        if (!isEmoji(emoji))
             throw new IllegalArgumentException(
                 "Profile.setEmoji: " + emoji + " is no emoji");
         this.emoji = emoji;
+        invalidate();
     }
 
     /**
@@ -87,21 +159,21 @@ public class Profile implements java.io.Serializable {
      * @since 1.0.0
      */
     public boolean containsStat(Stat key) {
-        return stats.containsKey(key);
+        return stats[key.ordinal()] != UNSETSTAT;
     }
 
     /**
      * Gets the value associated to a certain {@link Stat} if present.
      * 
      * @param key The {@link Stat} to search for.
-     * @return The value associated to <code>key</code>, or <code>null</code>
+     * @return The value associated to <code>key</code>, or {@link #UNSETSTAT}
      * if not present.
      * @author FoxySeta
      * @version 1.0.0
      * @since 1.0.0
      */
-    public Integer getStat(Stat key) {
-        return stats.get(key);
+    public int getStat(Stat key) {
+        return stats[key.ordinal()];
     }
 
     /**
@@ -110,28 +182,34 @@ public class Profile implements java.io.Serializable {
      * 
      * @param key The {@link Stat} to which the new value will be associated.
      * @param value The new value to set.
-     * @return The old value, or <code>null</code> if not present.
+     * @return The old value, or {@link #UNSETSTAT} if not present.
      * @author FoxySeta
      * @version 1.0.0
      * @since 1.0.0
      */
-    public Integer putStat(Stat key, Integer value) {
-        if (key.validate(value))
-            return stats.put(key, value);
-        return stats.get(key);
+    public int putStat(Stat key, int value) {
+        final int old = stats[key.ordinal()];
+        if (key.validate(value)) {
+            stats[key.ordinal()] = value;
+            invalidate();
+        }
+        return old;
     }
 
     /**
      * Removes the value associated to a certain {@link Stat} if present.
      * 
      * @param key The {@link Stat} whose value is to be deleted.
-     * @return The old value, or <code>null</code> if not present. 
+     * @return The old value, or {@link #UNSETSTAT} if not present. 
      * @author FoxySeta
      * @version 1.0.0
      * @since 1.0.0
      */
-    public Integer removeStat(Stat key) {
-        return stats.remove(key);
+    public int removeStat(Stat key) {
+        final int old = stats[key.ordinal()];
+        stats[key.ordinal()] = UNSETSTAT;
+        invalidate();
+        return old;
     }
     
     /**
@@ -172,6 +250,7 @@ public class Profile implements java.io.Serializable {
      * @since 1.0.0
      */
     public boolean addTag(String tag) {
+        invalidate();
         return tags.add(tag);
     }
     
@@ -186,11 +265,66 @@ public class Profile implements java.io.Serializable {
      * @since 1.0.0
      */
     public boolean removeTag(String tag) {
+        invalidate();
         return tags.remove(tag);
     }
 
     /**
-     * A string representation of the {@link Profile}.
+     * Checks whether another object is a {@link Profile} with the same {@link
+     * User}, {@link Location}, emoji, stats and tags. Only the fields the
+     * {@link ProfileCodec} stores are compared, so that a {@link Profile}
+     * equals itself once written and read back.
+     * 
+     * @param obj The object to be compared.
+     * @return <code>true</code> if the two are equal, <code>false</code>
+     * otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Profile))
+            return false;
+        final Profile other = (Profile)obj;
+        return sameUser(user, other.user)
+            && sameLocation(location, other.location)
+            && Objects.equals(emoji, other.emoji)
+            && Arrays.equals(stats, other.stats)
+            && tags.equals(other.tags);
+    }
+
+    /**
+     * A hash code consistent with {@link #equals}.
+     * 
+     * @return The hash code.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Override
+    public int hashCode() {
+        int res = Objects.hash(emoji) * 31 + Arrays.hashCode(stats);
+        if (user != null)
+            res = res * 31 + Objects.hash(user.getId(), user.getFirstName(),
+                                          user.getLastName(),
+                                          user.getUserName(),
+                                          user.getLanguageCode());
+        if (location != null)
+            res = res * 31 + Objects.hash(location.getLatitude(),
+                                          location.getLongitude(),
+                                          location.getHorizontalAccuracy());
+        // tags are compared ignoring their case
+        for (String tag : tags)
+            res += tag.toLowerCase(Locale.ROOT).hashCode();
+        return res;
+    }
+
+    /**
+     * A string representation of the {@link Profile}, which is rendered once
+     * and then reused until the {@link Profile} or its {@link User} change.
      * 
      * @return The string representation.
      * @author FoxySeta
@@ -198,23 +332,36 @@ public class Profile implements java.io.Serializable {
      * @since 1.0.0
      */
     public String toString() {
-        String res = String.format(
-            "%s *%s%s* @%s %s%n💬 %s%n",
-            emoji, user.getFirstName(),
-            user.getLastName() == null ? "" : " " + user.getLastName(),
-            user.getUserName(), emoji, user.getLanguageCode());
-        if (!stats.isEmpty())
-            res += "📋";
-        for (Entry<Stat, Integer> entry : stats.entrySet())
-            res += " " + entry.getValue() + entry.getKey().uom();
-        res += String.format("%n");
+        // fields are read once, since another thread may render meanwhile
+        final String cached = card;
+        if (cached != null && renderedUser == user)
+            return cached;
+        final StringBuilder res = new StringBuilder(CARDCAPACITY + tags.size() * TAGCAPACITY);
+        res.append(emoji).append(" *").append(user.getFirstName());
+        if (user.getLastName() != null)
+            res.append(' ').append(user.getLastName());
+        res.append("* @").append(user.getUserName()).append(' ').append(emoji).append(LINESEPARATOR)
+           .append("💬 ").append(user.getLanguageCode()).append(LINESEPARATOR);
+        boolean statsLine = false;
+        for (Stat stat : STATS)
+            if (containsStat(stat)) {
+                if (!statsLine) {
+                    res.append("📋");
+                    statsLine = true;
+                }
+                res.append(' ').append(getStat(stat)).append(stat.uom());
+            }
+        res.append(LINESEPARATOR);
         for (String tag : tags)
-            res += "#" + tag + " ";
-        return res;
+            res.append('#').append(tag).append(' ');
+        final String rendered = res.toString();
+        render(rendered, null);
+        return rendered;
     }
 
     /**
-     * A shorter string representation of the {@link Profile}.
+     * A shorter string representation of the {@link Profile}, cached like
+     * {@link #toString}.
      * 
      * @return The short string representation.
      * @author FoxySeta
@@ -222,16 +369,187 @@ public class Profile implements java.io.Serializable {
      * @since 1.0.0
      */
     public String toShortString() {
-        return String.format("%s @%s", emoji, user.getUserName());
+        final String cached = shortCard;
+        if (cached != null && renderedUser == user)
+            return cached;
+        final String rendered = emoji + " @" + user.getUserName();
+        render(null, rendered);
+        return rendered;
     }
 
     /** This {@link java.io.Serializable}'s version number. */
 	private static final long serialVersionUID = 4124174882150000215L;
+    /**
+     * The fields of {@link Profile} records written before the {@link
+     * ProfileCodec} was introduced.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("user", User.class),
+        new ObjectStreamField("location", Location.class),
+        new ObjectStreamField("emoji", String.class),
+        new ObjectStreamField("stats", EnumMap.class),
+        new ObjectStreamField("tags", TreeSet.class)
+    };
+    /** The line separator of the string representations. */
+    private static final String LINESEPARATOR = System.lineSeparator();
+    /** The initial capacity of {@link #card}, tags excluded. */
+    private static final int CARDCAPACITY = 128;
+    /** The capacity reserved for each tag of {@link #card}. */
+    private static final int TAGCAPACITY = 16;
+    /** Every {@link Stat}, in declaration order. */
+    private static final Stat[] STATS = Stat.values();
     /** The emoji used to decorate this {@link Profile}. */
     private String emoji = DEFAULTEMOJI;
-    /** The numeric parameters set by the user. */
-    private EnumMap<Stat, Integer> stats = new EnumMap<Stat, Integer>(Stat.class);
+    /**
+     * The numeric parameters set by the user, indexed by {@link
+     * Stat#ordinal}. Unset ones hold {@link #UNSETSTAT}.
+     */
+    private int[] stats = newStats();
     /** The tags set by the user. */
     private TreeSet<String> tags = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+    /** The cached result of {@link #toString}, or <code>null</code>. */
+    private transient String card;
+    /** The cached result of {@link #toShortString}, or <code>null</code>. */
+    private transient String shortCard;
+    /** The {@link #user} the cached representations were rendered for. */
+    private transient User renderedUser;
+
+    /**
+     * Creates an array of {@link #stats} where no {@link Stat} is set.
+     *
+     * @return The new array.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static int[] newStats() {
+        final int[] res = new int[STATS.length];
+        Arrays.fill(res, UNSETSTAT);
+        return res;
+    }
+
+    /**
+     * Discards the cached string representations after a change.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private void invalidate() {
+        card = null;
+        shortCard = null;
+    }
+
+    /**
+     * Caches a string representation, discarding the other one if it was
+     * rendered for another {@link #user}.
+     *
+     * @param card      The new {@link #card}, or <code>null</code>.
+     * @param shortCard The new {@link #shortCard}, or <code>null</code>.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private void render(String card, String shortCard) {
+        if (renderedUser != user) {
+            invalidate();
+            renderedUser = user;
+        }
+        if (card != null)
+            this.card = card;
+        if (shortCard != null)
+            this.shortCard = shortCard;
+    }
+
+    /**
+     * Checks whether two instances of {@link User} agree on the fields the
+     * {@link ProfileCodec} stores.
+     *
+     * @param u1 The first {@link User}, or <code>null</code>.
+     * @param u2 The second {@link User}, or <code>null</code>.
+     * @return <code>true</code> if they agree, <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static boolean sameUser(User u1, User u2) {
+        if (u1 == u2)
+            return true;
+        if (u1 == null || u2 == null)
+            return false;
+        return Objects.equals(u1.getId(), u2.getId())
+            && Objects.equals(u1.getFirstName(), u2.getFirstName())
+            && Objects.equals(u1.getLastName(), u2.getLastName())
+            && Objects.equals(u1.getUserName(), u2.getUserName())
+            && Objects.equals(u1.getLanguageCode(), u2.getLanguageCode());
+    }
+
+    /**
+     * Checks whether two instances of {@link Location} agree on the fields
+     * the {@link ProfileCodec} stores.
+     *
+     * @param l1 The first {@link Location}, or <code>null</code>.
+     * @param l2 The second {@link Location}, or <code>null</code>.
+     * @return <code>true</code> if they agree, <code>false</code> otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static boolean sameLocation(Location l1, Location l2) {
+        if (l1 == l2)
+            return true;
+        if (l1 == null || l2 == null)
+            return false;
+        return Objects.equals(l1.getLatitude(), l2.getLatitude())
+            && Objects.equals(l1.getLongitude(), l2.getLongitude())
+            && Objects.equals(l1.getHorizontalAccuracy(),
+                              l2.getHorizontalAccuracy());
+    }
+
+    /**
+     * Reads a {@link Profile} record written before the {@link ProfileCodec}
+     * was introduced.
+     *
+     * @param in The stream to read from.
+     * @throws IOException The record could not be read.
+     * @throws ClassNotFoundException The class of a field is missing.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        final ObjectInputStream.GetField fields = in.readFields();
+        user = (User)fields.get("user", null);
+        location = (Location)fields.get("location", null);
+        emoji = (String)fields.get("emoji", DEFAULTEMOJI);
+        stats = newStats();
+        final EnumMap<Stat, Integer> oldStats =
+            (EnumMap<Stat, Integer>)fields.get("stats", null);
+        if (oldStats != null)
+            for (Entry<Stat, Integer> entry : oldStats.entrySet())
+                stats[entry.getKey().ordinal()] = entry.getValue();
+        tags = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        final TreeSet<String> oldTags = (TreeSet<String>)fields.get("tags", null);
+        if (oldTags != null)
+            tags.addAll(oldTags);
+    }
+
+    /**
+     * Refuses to write a {@link Profile} through Java serialization, which is
+     * only kept for reading the tables written before the {@link ProfileCodec}
+     * was introduced.
+     *
+     * @param out The stream which would have been written to.
+     * @throws IOException Always.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        throw new NotSerializableException(
+            "Profile.writeObject: use ProfileCodec instead");
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.UncheckedIOException;
+
+import org.telegram.telegrambots.meta.api.objects.Location;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+/**
+ * <code>ProfileCodec</code> translates a {@link Profile} to and from a
+ * compact binary record. Only the fields which are actually displayed are
+ * kept: the user's identifier, names and language, the coordinates of their
+ * {@link Location}, the emoji, one integer per {@link Stat} and the tags.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ProfileCodec {
+
+    /** The version of the record layout written by {@link #encode}. */
+    final public static byte VERSION = 1;
+
+    /**
+     * Encodes a {@link Profile}.
+     *
+     * @param profile The {@link Profile} to be encoded.
+     * @return The binary record.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public static byte[] encode(Profile profile) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            // user
+            final User user = profile.user;
+            out.writeInt(user.getId());
+            writeString(out, user.getFirstName());
+            writeString(out, user.getLastName());
+            writeString(out, user.getUserName());
+            writeString(out, user.getLanguageCode());
+            // location
+            final Location location = profile.location;
+            out.writeBoolean(location != null);
+            if (location != null) {
+                out.writeDouble(location.getLatitude());
+                out.writeDouble(location.getLongitude());
+                final Double accuracy = location.getHorizontalAccuracy();
+                out.writeBoolean(accuracy != null);
+                if (accuracy != null)
+                    out.writeDouble(accuracy);
+            }
+            // emoji, stats and tags
+            out.writeUTF(profile.getEmoji());
+            final Stat[] stats = Stat.values();
+            out.writeByte(stats.length);
+            for (Stat stat : stats)
+                out.writeInt(profile.getStat(stat));
+            out.writeInt(profile.unmodifiableTags().size());
+            for (String tag : profile.unmodifiableTags())
+                out.writeUTF(tag);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a {@link Profile}.
+     *
+     * @param record A binary record created by {@link #encode}.
+     * @return The decoded {@link Profile}.
+     * @throws IOException The record is malformed or was written by a newer
+     * version of the codec.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public static Profile decode(byte[] record) throws IOException {
+        final DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(record));
+        final byte version = in.readByte();
+        if (version != VERSION)
+            throw new InvalidObjectException(
+                "ProfileCodec.decode: unknown version " + version);
+        // user
+        final User user = new User();
+        user.setId(in.readInt());
+        user.setFirstName(readString(in));
+        user.setLastName(readString(in));
+        user.setUserName(readString(in));
+        user.setLanguageCode(readString(in));
+        final Profile profile = new Profile(user);
+        // location
+        if (in.readBoolean()) {
+            final Location location = new Location();
+            location.setLatitude(in.readDouble());
+            location.setLongitude(in.readDouble());
+            if (in.readBoolean())
+                location.setHorizontalAccuracy(in.readDouble());
+            profile.location = location;
+        }
+        // emoji, stats and tags
+        profile.setEmoji(in.readUTF());
+        final Stat[] stats = Stat.values();
+        final int statCount = in.readUnsignedByte();
+        for (int i = 0; i < statCount; ++i) {
+            final int value = in.readInt();
+            if (i < stats.length && value != Profile.UNSETSTAT)
+                profile.putStat(stats[i], value);
+        }
+        for (int i = in.readInt(); i > 0; --i)
+            profile.addTag(in.readUTF());
+        return profile;
+    }
+
+    /** This class is not meant to be instantiated. */
+    private ProfileCodec() {
+    }
+
+    /**
+     * Writes a string which might be <code>null</code>.
+     *
+     * @param out The destination.
+     * @param s The string to be written.
+     * @throws IOException The string could not be written.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static void writeString(DataOutput out, String s)
+        throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     *
+     * @param in The source.
+     * @return The string, or <code>null</code>.
+     * @throws IOException The string could not be read.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+}
@@ -0,0 +1,189 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A <code>QueryCache</code> remembers the results of the latest queries run
+ * in a single chat, keyed by the {@linkplain Filter#getKey canonical form} of
+ * their {@link Filter}. Entries are evicted when they are the least recently
+ * used of a full cache, when they expire, and all together whenever a {@link
+ * Profile} of the chat is written. A <code>QueryCache</code> is thread-safe.
+ *
+ * @param <V> The type of the cached results.
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class QueryCache<V> {
+
+    /**
+     * Instantiates a new, empty {@link QueryCache}.
+     *
+     * @param capacity See {@link #capacity}.
+     * @param timeToLive The lifetime of each entry in milliseconds.
+     * @throws IllegalArgumentException Either parameter is negative.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public QueryCache(int capacity, long timeToLive) {
+        if (capacity < 0)
+            throw new IllegalArgumentException(
+                "QueryCache.QueryCache: capacity (" + capacity + ") < 0");
+        if (timeToLive < 0)
+            throw new IllegalArgumentException(
+                "QueryCache.QueryCache: timeToLive (" + timeToLive + ") < 0");
+        this.capacity = capacity;
+        this.timeToLive = timeToLive * 1000000;
+    }
+
+    /**
+     * Gets the number of times {@link #invalidate} has been called. A result
+     * computed while this number changed must not be {@linkplain #put cached}.
+     *
+     * @return The generation in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Looks up the result of a query.
+     *
+     * @param key The {@linkplain Filter#getKey canonical form} of the query.
+     * @return The cached result, or <code>null</code> if it is missing or
+     * expired.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized V get(String key) {
+        final Result<V> entry = entries.get(key);
+        if (entry == null || System.nanoTime() - entry.created > timeToLive) {
+            if (entry != null)
+                entries.remove(key);
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return entry.value;
+    }
+
+    /**
+     * Caches the result of a query, unless the cache has been {@linkplain
+     * #invalidate invalidated} since the query started.
+     *
+     * @param key The {@linkplain Filter#getKey canonical form} of the query.
+     * @param value The result of the query.
+     * @param generation The {@link #generation} read before running the
+     * query.
+     * @return <code>true</code> if the result was cached, <code>false</code>
+     * otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized boolean put(String key, V value, long generation) {
+        if (capacity == 0 || generation != this.generation)
+            return false;
+        entries.put(key, new Result<V>(value, System.nanoTime()));
+        return true;
+    }
+
+    /**
+     * Forgets every cached result.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized void invalidate() {
+        entries.clear();
+        ++generation;
+    }
+
+    /**
+     * Gets the number of lookups which found a result.
+     *
+     * @return The hit count.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups which found no result.
+     *
+     * @return The miss count.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * A <code>Result</code> is a cached result along with its creation time.
+     *
+     * @param <V> The type of the cached result.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static class Result<V> {
+
+        /**
+         * Instantiates a new {@link Result}.
+         *
+         * @param value See {@link #value}.
+         * @param created See {@link #created}.
+         * @author FoxySeta
+         * @version 1.0.0
+         * @since 1.0.0
+         */
+        Result(V value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+
+        /** The cached result. */
+        final private V value;
+        /** The {@link System#nanoTime} of the creation of the entry. */
+        final private long created;
+
+    }
+
+    /** The maximum number of entries. */
+    final private int capacity;
+    /** The lifetime of each entry in nanoseconds. */
+    final private long timeToLive;
+    /** The entries, from the least recently used one. */
+    final private Map<String, Result<V>> entries =
+        new LinkedHashMap<String, Result<V>>(16, 0.75f, true) {
+
+            /** This {@link java.io.Serializable}'s version number. */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, Result<V>> eldest) {
+                return size() > capacity;
+            }
+
+        };
+    /** The number of times {@link #invalidate} has been called. */
+    private long generation;
+    /** The number of lookups which found a result. */
+    private long hits;
+    /** The number of lookups which found no result. */
+    private long misses;
+
+}
@@ -0,0 +1,281 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A <code>QueryPlan</code> is a {@link Filter} compiled against the
+ * statistics of a {@link ChatSnapshot}. Its {@linkplain Step steps} come in
+ * two phases: the index lookups, which narrow down the candidate slots, and
+ * the checks against the columns, which run on each surviving candidate.
+ * Index lookups are sorted by the number of slots they return, smallest
+ * first, and checks by their cost over the fraction of rows they discard,
+ * so that the cheapest and most selective ones run first. As soon as the
+ * candidates run out, the remaining steps are skipped altogether.
+ * <p>
+ * Estimates assume that the predicates are independent. Once the plan is
+ * {@linkplain ChatSnapshot#explain explained}, each step also carries the
+ * number of rows which actually survived it.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class QueryPlan {
+
+    /** The relative cost of checking a stat column. */
+    final public static double STATCOST = 1;
+    /** The relative cost of checking a distance against the columns. */
+    final public static double DISTANCECOST = 8;
+
+    /**
+     * A <code>Kind</code> tells what a {@link Step} does.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public enum Kind {
+
+        /** Keeps the slots having a tag, through the {@link TagIndex}. */
+        TAG,
+        /** Drops the slots having a tag, through the {@link TagIndex}. */
+        EXCLUDETAG,
+        /** Keeps the slots near the origin, through the {@link GeoIndex}. */
+        AREA,
+        /** Checks a stat column against a range. */
+        STAT,
+        /** Checks the location columns against the distance range. */
+        DISTANCE
+
+    }
+
+    /**
+     * A <code>Step</code> is a single predicate of a {@link QueryPlan}.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public static class Step {
+
+        /**
+         * Instantiates a new {@link Step}.
+         *
+         * @param kind See {@link #kind}.
+         * @param label See {@link #label}.
+         * @param cost See {@link #cost}.
+         * @param selectivity See {@link #selectivity}.
+         * @author FoxySeta
+         * @version 1.0.0
+         * @since 1.0.0
+         */
+        Step(Kind kind, String label, double cost, double selectivity) {
+            this.kind = kind;
+            this.label = label;
+            this.cost = cost;
+            this.selectivity = selectivity;
+        }
+
+        /**
+         * Gets what the step does.
+         *
+         * @see #kind
+         * @return The {@link Kind} of the step.
+         * @author FoxySeta
+         * @version 1.0.0
+         * @since 1.0.0
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Gets the estimated number of rows surviving this step and every
+         * previous one.
+         *
+         * @see #estimate
+         * @return The number of rows in question.
+         * @author FoxySeta
+         * @version 1.0.0
+         * @since 1.0.0
+         */
+        public long getEstimate() {
+            return estimate;
+        }
+
+        /**
+         * Gets the number of rows which actually survived this step and
+         * every previous one.
+         *
+         * @see #actual
+         * @return The number of rows in question, or <code>-1</code> if the
+         * plan was not explained or the step was skipped.
+         * @author FoxySeta
+         * @version 1.0.0
+         * @since 1.0.0
+         */
+        public long getActual() {
+            return actual;
+        }
+
+        /**
+         * A string representation of the {@link Step}.
+         *
+         * @return The string representation.
+         * @author FoxySeta
+         * @version 1.0.0
+         * @since 1.0.0
+         */
+        @Override
+        public String toString() {
+            return label + " ≈ " + estimate + (actual < 0 ? "" : " = " + actual);
+        }
+
+        /** What the step does. */
+        final Kind kind;
+        /** A human-readable description of the predicate. */
+        final private String label;
+        /** The relative cost of evaluating the step on a single row. */
+        final private double cost;
+        /** The estimated fraction of the rows passing the step. */
+        final private double selectivity;
+        /** The tag looked up by {@link Kind#TAG} and {@link Kind#EXCLUDETAG}. */
+        String tag;
+        /** The ordinal of the {@link Stat} checked by {@link Kind#STAT}. */
+        int stat;
+        /** The range checked by {@link Kind#STAT}. */
+        IntRange range;
+        /** The slots returned by {@link Kind#AREA}. */
+        Collection<Integer> area;
+        /** The estimated number of rows surviving up to this step. */
+        private long estimate;
+        /** The number of rows which survived up to this step, or -1. */
+        long actual = -1;
+
+    }
+
+    /**
+     * Gets the index lookups, in order of execution.
+     *
+     * @return The steps in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public List<Step> getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Gets the checks against the columns, in order of execution.
+     *
+     * @return The steps in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public List<Step> getChecks() {
+        return checks;
+    }
+
+    /**
+     * Checks whether the plan is known to select nothing without running
+     * any step.
+     *
+     * @return <code>true</code> if no row can match, <code>false</code>
+     * otherwise.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Gets the estimated number of matching rows.
+     *
+     * @return The number of rows in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public long getEstimate() {
+        return empty ? 0 : estimate;
+    }
+
+    /**
+     * A string representation of the {@link QueryPlan}, listing each step
+     * with its estimated and actual rows.
+     *
+     * @return The string representation.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Override
+    public String toString() {
+        final StringBuilder res = new StringBuilder();
+        res.append("👤 × ").append(rows);
+        if (empty)
+            return res.append(LINESEPARATOR).append("∅").toString();
+        int i = 0;
+        for (Step step : lookups)
+            res.append(LINESEPARATOR).append(++i).append(". 🗂 ").append(step);
+        for (Step step : checks)
+            res.append(LINESEPARATOR).append(++i).append(". 🔎 ").append(step);
+        return res.toString();
+    }
+
+    /**
+     * Instantiates a new {@link QueryPlan}, ordering its steps.
+     *
+     * @param filter See {@link #filter}.
+     * @param rows The number of rows in the {@link ChatSnapshot}.
+     * @param lookups The index lookups, in any order.
+     * @param checks The checks against the columns, in any order.
+     * @param empty See {@link #empty}.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    QueryPlan(Filter filter, int rows, List<Step> lookups, List<Step> checks,
+              boolean empty) {
+        this.filter = filter;
+        this.rows = rows;
+        this.empty = empty;
+        // the smallest lookups shrink the candidates the fastest
+        lookups.sort(Comparator.comparingDouble(step -> step.selectivity));
+        // the classic rank of a filter: cost per discarded row
+        checks.sort(Comparator.comparingDouble(
+            step -> step.selectivity >= 1 ? Double.POSITIVE_INFINITY
+                                          : step.cost / (1 - step.selectivity)));
+        this.lookups = lookups;
+        this.checks = checks;
+        double rowsLeft = rows;
+        for (Step step : lookups)
+            step.estimate = Math.round(rowsLeft *= step.selectivity);
+        for (Step step : checks)
+            step.estimate = Math.round(rowsLeft *= step.selectivity);
+        estimate = Math.round(rowsLeft);
+    }
+
+    /** The line separator of the string representation. */
+    final private static String LINESEPARATOR = System.lineSeparator();
+
+    /** The {@link Filter} the plan was compiled from. */
+    final Filter filter;
+    /** The number of rows in the {@link ChatSnapshot}. */
+    final private int rows;
+    /** The index lookups, in order of execution. */
+    final private List<Step> lookups;
+    /** The checks against the columns, in order of execution. */
+    final private List<Step> checks;
+    /** Whether no row can match, whatever the steps. */
+    final private boolean empty;
+    /** The estimated number of matching rows. */
+    final private long estimate;
+
+}
@@ -1,5 +1,6 @@
 package io.github.foxyseta.telegrindr.bot.data;
 
+import java.util.Arrays;
 import java.util.regex.Pattern;
 
 /**
@@ -31,11 +32,11 @@ class StatRegex {
 public enum Stat {
 
     /** An age is measured in years. */
-    AGE("yo", new Range<Integer>(14, 150)),
+    AGE("yo", new IntRange(14, 150)),
     /** An height is measured in centimeters. */
-    HEIGHT("cm", new Range<Integer>(50, 250)),
+    HEIGHT("cm", new IntRange(50, 250)),
     /** A weight is measured in kilograms. */
-    WEIGHT("kg", new Range<Integer>(25, 750));
+    WEIGHT("kg", new IntRange(25, 750));
  
     /**
      * Instantiates a new {@link Stat}.
@@ -48,7 +49,7 @@ public enum Stat {
      * @version 1.0.0
      * @since 1.0.0
      */
-    Stat(String uom, Range<Integer> interval) {
+    Stat(String uom, IntRange interval) {
         if (!StatRegex.UOMPATTERN.matcher(uom).matches())
             throw new IllegalArgumentException(
                 "Stat.Stat: " + uom + " does not match " + StatRegex.UOMREGEX
@@ -57,6 +58,31 @@ public enum Stat {
         this.interval = interval;
     }
 
+    /**
+     * Looks up the {@link Stat} measured in a certain unit without allocating
+     * any string, through a table indexed by the unit's first character.
+     *
+     * @param s    The string containing the unit.
+     * @param from The index of the first character of the unit.
+     * @param to   The index following the last character of the unit.
+     * @return The {@link Stat} in question, or <code>null</code> if there is
+     * none.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public static Stat of(String s, int from, int to) {
+        if (from >= to || s.charAt(from) >= UOMTABLE.length)
+            return null;
+        final Stat[] candidates = UOMTABLE[s.charAt(from)];
+        if (candidates != null)
+            for (Stat stat : candidates)
+                if (stat.uom.length() == to - from
+                    && s.regionMatches(from, stat.uom, 0, to - from))
+                    return stat;
+        return null;
+    }
+
     /**
      * Gets the {@link #uom}.
      * 
@@ -108,9 +134,35 @@ public enum Stat {
         return interval.contains(x);
     }
 
+    /**
+     * Every {@link Stat}, grouped by the first character of its {@link #uom},
+     * which is always ASCII.
+     */
+    private static final Stat[][] UOMTABLE = uomTable();
+
     /** The unit of measurement for this {@link Stat}. */
     private String uom;
-    /** A {@Range} representing the accepted values for this {@link Stat}. */
-    private Range<Integer> interval;
+    /** An {@link IntRange} representing the accepted values for this {@link Stat}. */
+    private IntRange interval;
+
+
+    /**
+     * Builds the {@link #UOMTABLE}.
+     *
+     * @return The table in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static Stat[][] uomTable() {
+        final Stat[][] res = new Stat[128][];
+        for (Stat stat : values()) {
+            final char first = stat.uom.charAt(0);
+            final Stat[] old = res[first] == null ? new Stat[0] : res[first];
+            res[first] = Arrays.copyOf(old, old.length + 1);
+            res[first][old.length] = stat;
+        }
+        return res;
+    }
 
 }
\ No newline at end of file
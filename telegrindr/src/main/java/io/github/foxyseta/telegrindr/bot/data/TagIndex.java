@@ -0,0 +1,101 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A <code>TagIndex</code> maps every tag used in a single chat to the bitmap
+ * of the {@linkplain ChatSnapshot slots} whose users set it. Slots are dense,
+ * so that each bitmap takes about one bit per member of the chat.
+ * <code>TagIndex</code> is not thread-safe: its {@link ChatSnapshot} guards
+ * it.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class TagIndex {
+
+    /**
+     * Replaces the tags associated to a slot.
+     *
+     * @param slot The slot of the user.
+     * @param tags The user's current tags.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public void update(int slot, Collection<String> tags) {
+        while (tagsOf.size() <= slot)
+            tagsOf.add(new TreeSet<String>());
+        final TreeSet<String> newTags = new TreeSet<String>();
+        for (String tag : tags)
+            newTags.add(key(tag));
+        final TreeSet<String> oldTags = tagsOf.set(slot, newTags);
+        for (String tag : oldTags)
+            if (!newTags.contains(tag)) {
+                final BitSet bitmap = postings.get(tag);
+                bitmap.clear(slot);
+                if (bitmap.isEmpty())
+                    postings.remove(tag);
+            }
+        for (String tag : newTags)
+            if (!oldTags.contains(tag))
+                postings.computeIfAbsent(tag, t -> new BitSet()).set(slot);
+    }
+
+    /**
+     * Gets the slots having a tag.
+     *
+     * @param tag The tag in question, in any case.
+     * @return The bitmap of the slots in question, which must not be
+     * modified, or <code>null</code> if there are none.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    BitSet bitmap(String tag) {
+        return postings.get(key(tag));
+    }
+
+    /**
+     * Gets the tags associated to a slot.
+     *
+     * @param slot The slot of the user.
+     * @return The user's tags, lowercase and sorted.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public Collection<String> get(int slot) {
+        return slot < tagsOf.size() ? Collections.unmodifiableSet(tagsOf.get(slot))
+                                    : Collections.<String>emptySet();
+    }
+
+    /** The bitmap of each tag currently in use. */
+    private Map<String, BitSet> postings = new HashMap<String, BitSet>();
+    /** The normalized tags of each slot. */
+    private List<TreeSet<String>> tagsOf = new ArrayList<TreeSet<String>>();
+
+    /**
+     * Normalizes a tag so that tags differing only by case share the same
+     * bitmap, just like in {@link Profile}.
+     *
+     * @param tag The tag to normalize.
+     * @return The normalized tag.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    static String key(String tag) {
+        return tag.toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,225 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.telegram.abilitybots.api.db.MapDBContext;
+import org.telegram.telegrambots.meta.api.objects.Location;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import io.github.foxyseta.telegrindr.bot.data.Profile;
+import io.github.foxyseta.telegrindr.bot.data.Stat;
+
+/**
+ * Runs the {@link ProfileStoreTest} against a {@link MapDBProfileStore}, opened on a database file the way the bot
+ * opens its own.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class MapDBProfileStoreTest extends ProfileStoreTest {
+
+    /**
+     * Checks that the {@link Profile} instances written before the {@link ProfileSerializer} was introduced, when the
+     * bot stored them in its own tables through Java serialization, are moved to the current tables and read back with
+     * every field.
+     *
+     * @throws Exception The legacy {@link Profile} class could not be compiled or the store failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Test
+    public void legacyTablesAreMigrated() throws Exception {
+        final Path legacy = Files.createDirectories(directory.resolve("legacy"));
+        final Class<?> legacyProfile = legacyProfile(legacy);
+        final Location location = new Location();
+        location.setLatitude(44.4949);
+        location.setLongitude(11.3426);
+        final EnumMap<Stat, Integer> stats = new EnumMap<Stat, Integer>(Stat.class);
+        stats.put(Stat.AGE, 30);
+        stats.put(Stat.HEIGHT, 180);
+        // written the way the bot did, through its own view of the database
+        DB old = DBMaker.fileDB(legacy.resolve(DATABASE).toFile()).transactionEnable().make();
+        final Map<Integer, Object> table = new MapDBContext(old).getMap(String.format(MapDBProfileStore.LEGACYTABLE,
+                LEGACYCHAT));
+        table.put(1, legacyProfile.getConstructor(User.class, Location.class, String.class, EnumMap.class,
+                Collection.class).newInstance(user(1), location, FOX, stats, List.of("rust", "Java")));
+        table.put(2, legacyProfile.getConstructor(User.class, Location.class, String.class, EnumMap.class,
+                Collection.class).newInstance(user(2), null, Profile.DEFAULTEMOJI, new EnumMap<Stat, Integer>(
+                        Stat.class), List.of()));
+        old.commit();
+        old.close();
+        final Profile first = new Profile(user(1)), second = new Profile(user(2));
+        first.location = location;
+        first.setEmoji(FOX);
+        first.putStat(Stat.AGE, 30);
+        first.putStat(Stat.HEIGHT, 180);
+        first.addTag("rust");
+        first.addTag("Java");
+        // the migration runs once, then its results survive reopening
+        for (int run = 0; run < 2; ++run) {
+            final DB reopened = DBMaker.fileDB(legacy.resolve(DATABASE).toFile()).transactionEnable().make();
+            final MapDBProfileStore migrated = new MapDBProfileStore(reopened, new MapDBContext(reopened));
+            assertEquals(List.of(LEGACYCHAT), migrated.chats());
+            assertEquals(first, migrated.get(LEGACYCHAT, 1));
+            assertEquals(Set.of("Java", "rust"), migrated.get(LEGACYCHAT, 1).unmodifiableTags());
+            assertEquals(second, migrated.get(LEGACYCHAT, 2));
+            assertTrue(new MapDBContext(reopened).getMap(String.format(MapDBProfileStore.LEGACYTABLE, LEGACYCHAT))
+                    .isEmpty());
+            migrated.close();
+            reopened.close();
+        }
+    }
+
+    /** The name of the database file within the directory. */
+    final private static String DATABASE = "telegrindr.db";
+    /** The chat used by {@link #legacyTablesAreMigrated}. */
+    final private static Long LEGACYCHAT = -100L;
+    /** The emoji of a legacy {@link Profile}, which is not the default one. */
+    final private static String FOX = "\uD83E\uDD8A";
+    /**
+     * The source of the {@link Profile} class as far as Java serialization is concerned, before the {@link
+     * ProfileSerializer} was introduced: same name, same version and same fields.
+     */
+    final private static String LEGACYSOURCE = String.join("\n",
+            "package io.github.foxyseta.telegrindr.bot.data;",
+            "import java.util.Collection;",
+            "import java.util.EnumMap;",
+            "import java.util.TreeSet;",
+            "import org.telegram.telegrambots.meta.api.objects.Location;",
+            "import org.telegram.telegrambots.meta.api.objects.User;",
+            "public class Profile implements java.io.Serializable {",
+            "    private static final long serialVersionUID = 4124174882150000215L;",
+            "    public User user;",
+            "    public Location location;",
+            "    private String emoji;",
+            "    private EnumMap<Stat, Integer> stats;",
+            "    private TreeSet<String> tags = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);",
+            "    public Profile(User user, Location location, String emoji, EnumMap<Stat, Integer> stats,",
+            "            Collection<String> tags) {",
+            "        this.user = user;",
+            "        this.location = location;",
+            "        this.emoji = emoji;",
+            "        this.stats = stats;",
+            "        this.tags.addAll(tags);",
+            "    }",
+            "}");
+
+    /** The database of the open store. */
+    private DB mapdb;
+
+    /**
+     * Opens a {@link MapDBProfileStore} on a database file within the directory.
+     *
+     * @param directory The directory in question.
+     * @return The store in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    ProfileStore open(Path directory) {
+        mapdb = DBMaker.fileDB(directory.resolve(DATABASE).toFile()).transactionEnable().make();
+        return new MapDBProfileStore(mapdb, new MapDBContext(mapdb));
+    }
+
+    /**
+     * Closes a {@link MapDBProfileStore}, then its database, which the store leaves open.
+     *
+     * @param store The store in question.
+     * @throws IOException The store could not be closed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    void close(ProfileStore store) throws IOException {
+        store.close();
+        mapdb.close();
+    }
+
+    /**
+     * Compiles the {@linkplain #LEGACYSOURCE legacy} {@link Profile} class, then loads it apart from the current one,
+     * so that its instances are written as the bot used to write them but read back as current {@link Profile}
+     * instances.
+     *
+     * @param directory The directory to compile the class in.
+     * @return The legacy {@link Profile} class.
+     * @throws IOException            The class could not be compiled.
+     * @throws ClassNotFoundException The class could not be loaded.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static Class<?> legacyProfile(Path directory) throws IOException, ClassNotFoundException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler, "no compiler to build the legacy profile class with");
+        final Path source = directory.resolve("Profile.java");
+        Files.write(source, LEGACYSOURCE.getBytes(StandardCharsets.UTF_8));
+        final String classpath = String.join(File.pathSeparator, location(User.class), location(Stat.class));
+        assertEquals(0, compiler.run(null, null, null, "-classpath", classpath, "-d", directory.toString(),
+                source.toString()));
+        final byte[] bytes = Files.readAllBytes(directory.resolve(Paths.get("io", "github", "foxyseta", "telegrindr",
+                "bot", "data", "Profile.class")));
+        return new ClassLoader(MapDBProfileStoreTest.class.getClassLoader()) {
+            {
+                defineClass(null, bytes, 0, bytes.length);
+            }
+        }.loadClass(Profile.class.getName());
+    }
+
+    /**
+     * Finds where a class was loaded from.
+     *
+     * @param type The class in question.
+     * @return The path of its directory or archive.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static String location(Class<?> type) {
+        try {
+            return Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (java.net.URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Builds a {@link User}.
+     *
+     * @param id The user identifier.
+     * @return The {@link User} in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static User user(int id) {
+        final User user = new User();
+        user.setId(id);
+        user.setFirstName("User" + id);
+        user.setUserName("user" + id);
+        user.setLanguageCode("en");
+        return user;
+    }
+
+}
@@ -0,0 +1,128 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import io.github.foxyseta.telegrindr.bot.data.Profile;
+
+/**
+ * Runs the {@link ProfileStoreTest} against a {@link MappedProfileStore}.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public class MappedProfileStoreTest extends ProfileStoreTest {
+
+    /**
+     * Checks that a record torn by a crash is skipped on reopening, so that the previous record of the same user is
+     * read instead.
+     *
+     * @throws IOException The store failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Test
+    public void tornRecordIsSkipped() throws IOException {
+        final Path crashed = directory.resolve("crashed");
+        final MappedProfileStore store = new MappedProfileStore(crashed);
+        final Profile before = profile("Ada"), after = profile("Ada Lovelace");
+        store.put(CHAT, before);
+        store.commit();
+        // the crash hits while the replacement is being written: slot 0 is the header, then come the two records
+        store.put(CHAT, after);
+        try (FileChannel file = FileChannel.open(crashed.resolve(CHAT + MappedProfileStore.EXTENSION),
+                StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.wrap(new byte[8]), 2 * MappedProfileStore.SLOTSIZE + 32);
+        }
+        final MappedProfileStore reopened = new MappedProfileStore(crashed);
+        assertEquals(before, reopened.get(CHAT, 1));
+        // the torn slots are reused rather than read again
+        reopened.put(CHAT, after);
+        reopened.close();
+        final MappedProfileStore recovered = new MappedProfileStore(crashed);
+        assertEquals(after, recovered.get(CHAT, 1));
+        recovered.close();
+        // the crashed store is only closed to release its file
+        store.close();
+    }
+
+    /**
+     * Checks that a run of slots whose header never reached the disk ends the slots in use, rather than making the
+     * whole file unreadable, so that the previous record of the same user is read instead.
+     *
+     * @throws IOException The store failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Test
+    public void lostRunHeaderTruncates() throws IOException {
+        final Path crashed = directory.resolve("truncated");
+        final MappedProfileStore store = new MappedProfileStore(crashed);
+        final Profile before = profile("Ada"), after = profile("Ada Lovelace");
+        store.put(CHAT, before);
+        store.commit();
+        // the crash hits after the number of slots in use reached the disk, but before the header of the new run did
+        store.put(CHAT, after);
+        try (FileChannel file = FileChannel.open(crashed.resolve(CHAT + MappedProfileStore.EXTENSION),
+                StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.wrap(new byte[MappedProfileStore.SLOTSIZE]), 2 * MappedProfileStore.SLOTSIZE);
+        }
+        final MappedProfileStore reopened = new MappedProfileStore(crashed);
+        assertEquals(before, reopened.get(CHAT, 1));
+        // the truncated slots are allocated again
+        reopened.put(CHAT, after);
+        reopened.put(CHAT, profile("Augusta Ada King"));
+        reopened.close();
+        final MappedProfileStore recovered = new MappedProfileStore(crashed);
+        assertEquals(profile("Augusta Ada King"), recovered.get(CHAT, 1));
+        recovered.close();
+        // the crashed store is only closed to release its file
+        store.close();
+    }
+
+    /** The chat used by the crash tests. */
+    final private static Long CHAT = 7L;
+
+    /**
+     * Opens a {@link MappedProfileStore} on the directory itself.
+     *
+     * @param directory The directory in question.
+     * @return The store in question.
+     * @throws IOException The directory could not be created.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Override
+    ProfileStore open(Path directory) throws IOException {
+        return new MappedProfileStore(directory);
+    }
+
+    /**
+     * Builds the {@link Profile} of user <code>1</code>.
+     *
+     * @param firstName The user's first name.
+     * @return The {@link Profile} in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static Profile profile(String firstName) {
+        final User user = new User();
+        user.setId(1);
+        user.setFirstName(firstName);
+        return new Profile(user);
+    }
+
+}
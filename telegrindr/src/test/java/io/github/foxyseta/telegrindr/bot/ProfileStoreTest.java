@@ -0,0 +1,338 @@
+package io.github.foxyseta.telegrindr.bot;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.telegram.telegrambots.meta.api.objects.Location;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import io.github.foxyseta.telegrindr.bot.data.ChatStatistics;
+import io.github.foxyseta.telegrindr.bot.data.IntRange;
+import io.github.foxyseta.telegrindr.bot.data.Profile;
+import io.github.foxyseta.telegrindr.bot.data.Stat;
+
+/**
+ * Checks that a {@link ProfileStore} honours its contract. Each implementation gets a subclass telling how to open
+ * it on a directory, so that every test runs against all of them.
+ *
+ * @author FoxySeta
+ * @version 1.0
+ * @since 1.0
+ */
+public abstract class ProfileStoreTest {
+
+    /**
+     * Checks that a missing {@link Profile} is <code>null</code> and that a stored one reads back equal.
+     *
+     * @throws IOException The store failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Test
+    public void putThenGet() throws IOException {
+        assertNull(store.get(CHAT, 1));
+        final Profile profile = profile(1, "Ada");
+        store.put(CHAT, profile);
+        assertEquals(profile, store.get(CHAT, 1));
+        assertNull(store.get(CHAT, 2));
+        assertNull(store.get(OTHERCHAT, 1));
+    }
+
+    /**
+     * Checks that replacing a {@link Profile} with a larger and then a smaller one keeps only the latest.
+     *
+     * @throws IOException The store failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Test
+    public void putReplaces() throws IOException {
+        store.put(CHAT, profile(1, "Ada"));
+        final Profile grown = profile(1, "Ada");
+        for (int i = 0; i < 100; ++i)
+            grown.addTag("tag" + i);
+        store.put(CHAT, grown);
+        assertEquals(grown, store.get(CHAT, 1));
+        final Profile shrunk = profile(1, "Ada Lovelace");
+        store.put(CHAT, shrunk);
+        assertEquals(shrunk, store.get(CHAT, 1));
+        assertEquals(1, profiles(CHAT).size());
+    }
+
+    /**
+     * Checks that {@link ProfileStore#putAll} stores every {@link Profile} and {@link ProfileStore#forEach} visits
+     * each of them once.
+     *
+     * @throws IOException The store failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Test
+    public void putAllThenForEach() throws IOException {
+        final Map<Integer, Profile> profiles = profiles(1, 50);
+        store.putAll(CHAT, profiles);
+        store.put(OTHERCHAT, profile(1000, "Grace"));
+        assertEquals(profiles, profiles(CHAT));
+        for (Profile p : profiles.values())
+            assertEquals(p, store.get(CHAT, p.user.getId()));
+        assertEquals(1, profiles(OTHERCHAT).size());
+    }
+
+    /**
+     * Checks that {@link ProfileStore#chats} lists exactly the chats with some {@link Profile}.
+     *
+     * @throws IOException The store failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Test
+    public void chats() throws IOException {
+        store.put(CHAT, profile(1, "Ada"));
+        store.put(OTHERCHAT, profile(2, "Grace"));
+        assertEquals(Set.of(CHAT, OTHERCHAT), new HashSet<Long>(store.chats()));
+    }
+
+    /**
+     * Checks that {@link ChatStatistics} read back with the same counts, and that they can be removed.
+     *
+     * @throws IOException The store failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Test
+    public void statisticsRoundTrip() throws IOException {
+        assertNull(store.getStatistics(CHAT));
+        final ChatStatistics statistics = new ChatStatistics();
+        for (Profile p : profiles(1, 50).values())
+            statistics.update(null, p);
+        store.putStatistics(CHAT, statistics);
+        assertSameStatistics(statistics, store.getStatistics(CHAT));
+        store.commit();
+        reopen();
+        assertSameStatistics(statistics, store.getStatistics(CHAT));
+        store.putStatistics(CHAT, null);
+        assertNull(store.getStatistics(CHAT));
+    }
+
+    /**
+     * Checks that every committed {@link Profile} survives closing and reopening the store, including replaced ones.
+     *
+     * @throws IOException The store failed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @Test
+    public void commitCloseReopen() throws IOException {
+        final Map<Integer, Profile> profiles = profiles(1, 50);
+        store.putAll(CHAT, profiles);
+        store.commit();
+        // replace some records after the commit, then again before the next one
+        for (int id = 1; id <= 10; ++id) {
+            final Profile p = profile(id, "Renamed");
+            p.addTag("moved");
+            store.put(CHAT, p);
+            profiles.put(id, p);
+        }
+        final Profile last = profile(1, "Renamed twice");
+        store.put(CHAT, last);
+        profiles.put(1, last);
+        store.put(OTHERCHAT, profile(1000, "Grace"));
+        store.commit();
+        reopen();
+        assertEquals(Set.of(CHAT, OTHERCHAT), new HashSet<Long>(store.chats()));
+        assertEquals(profiles, profiles(CHAT));
+        assertEquals(last, store.get(CHAT, 1));
+        // the reopened store keeps accepting changes
+        final Profile added = profile(51, "Edsger");
+        store.put(CHAT, added);
+        store.commit();
+        reopen();
+        assertEquals(added, store.get(CHAT, 51));
+        assertEquals(profiles.size() + 1, profiles(CHAT).size());
+    }
+
+    /** A chat used by the tests. */
+    final private static Long CHAT = -1001234567890L;
+    /** Another chat used by the tests. */
+    final private static Long OTHERCHAT = 42L;
+
+    /** A fresh directory for the store under test. */
+    @TempDir
+    Path directory;
+    /** The store under test. */
+    private ProfileStore store;
+
+    /**
+     * Opens the store under test.
+     *
+     * @param directory The directory holding its data, which may already contain a closed store.
+     * @return The store in question.
+     * @throws IOException The store could not be opened.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    abstract ProfileStore open(Path directory) throws IOException;
+
+    /**
+     * Closes the store under test, along with anything {@link #open} opened for it.
+     *
+     * @param store The store in question.
+     * @throws IOException The store could not be closed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    void close(ProfileStore store) throws IOException {
+        store.close();
+    }
+
+    /**
+     * Opens the store under test before each test.
+     *
+     * @throws IOException The store could not be opened.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        store = open(directory);
+    }
+
+    /**
+     * Closes the store under test after each test.
+     *
+     * @throws IOException The store could not be closed.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        close(store);
+    }
+
+    /**
+     * Closes the store under test, then opens it again on the same directory.
+     *
+     * @throws IOException The store could not be closed or opened.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private void reopen() throws IOException {
+        close(store);
+        store = open(directory);
+    }
+
+    /**
+     * Collects the {@link Profile} instances of a chat through {@link ProfileStore#forEach}, checking that none is
+     * visited twice.
+     *
+     * @param chatId The chat in question.
+     * @return The {@link Profile} instances, by user identifier.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private Map<Integer, Profile> profiles(Long chatId) {
+        final Map<Integer, Profile> res = new HashMap<Integer, Profile>();
+        store.forEach(chatId, p -> assertNull(res.put(p.user.getId(), p), "visited twice: " + p.user.getId()));
+        return res;
+    }
+
+    /**
+     * Builds some {@link Profile} instances with stats, tags and, for half of them, a {@link Location}.
+     *
+     * @param first The first user identifier.
+     * @param count The number of {@link Profile} instances.
+     * @return The {@link Profile} instances, by user identifier.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static Map<Integer, Profile> profiles(int first, int count) {
+        final Map<Integer, Profile> res = new HashMap<Integer, Profile>();
+        for (int id = first; id < first + count; ++id) {
+            final Profile p = profile(id, "User" + id);
+            p.putStat(Stat.AGE, 18 + id % 60);
+            if (id % 3 == 0)
+                p.putStat(Stat.HEIGHT, 150 + id % 50);
+            p.addTag(id % 2 == 0 ? "even" : "odd");
+            if (id % 5 == 0)
+                p.addTag("five");
+            if (id % 2 == 0) {
+                final Location location = new Location();
+                location.setLatitude(44.0 + id / 100.0);
+                location.setLongitude(11.0 - id / 100.0);
+                p.location = location;
+            }
+            res.put(id, p);
+        }
+        return res;
+    }
+
+    /**
+     * Builds a {@link Profile} with no stats, tags or {@link Location}.
+     *
+     * @param id        The user identifier.
+     * @param firstName The user's first name.
+     * @return The {@link Profile} in question.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static Profile profile(int id, String firstName) {
+        final User user = new User();
+        user.setId(id);
+        user.setFirstName(firstName);
+        user.setUserName("user" + id);
+        user.setLanguageCode("en");
+        return new Profile(user);
+    }
+
+    /**
+     * Checks that two instances of {@link ChatStatistics} agree on every count.
+     *
+     * @param expected The {@link ChatStatistics} written.
+     * @param actual   The {@link ChatStatistics} read back.
+     * @author FoxySeta
+     * @version 1.0
+     * @since 1.0
+     */
+    private static void assertSameStatistics(ChatStatistics expected, ChatStatistics actual) {
+        assertNotNull(actual);
+        assertEquals(expected.profiles(), actual.profiles());
+        assertEquals(expected.located(), actual.located());
+        assertEquals(expected.cells(), actual.cells());
+        assertEquals(expected.densestCell(), actual.densestCell());
+        assertEquals(expected.distinctTags(), actual.distinctTags());
+        assertEquals(expected.topTags(10), actual.topTags(10));
+        for (String tag : List.of("even", "odd", "five", "none"))
+            assertEquals(expected.tagCount(tag), actual.tagCount(tag));
+        for (Stat stat : Stat.values()) {
+            assertEquals(expected.count(stat), actual.count(stat));
+            assertEquals(expected.count(stat, IntRange.of(20, 40)), actual.count(stat, IntRange.of(20, 40)));
+            assertEquals(expected.quantile(stat, 0.5), actual.quantile(stat, 0.5));
+        }
+    }
+
+}
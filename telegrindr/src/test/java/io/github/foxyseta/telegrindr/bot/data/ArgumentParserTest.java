@@ -0,0 +1,317 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Feeds the same arguments to {@link ArgumentParser} and to the regexes it
+ * replaced, checking that both agree on the kind of each argument, on its
+ * groups and on its unit.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ArgumentParserTest {
+
+    /** Arguments lying on the borders of the regexes. */
+    final private static String[] EDGECASES = {
+        "", "1", "12", "123", "12,", ",5", "1,2", ",", ",,", "1,,2", "1,2,3km",
+        "top", "top0", "top12", "top-1", "Top1", "top1km", "top99999999999",
+        "5km", ",km", "1,km", ",1km", "1,2km", "2,1km", "12yo", "180cm", "70kg",
+        "1_", "_", "km", "0x10km", "99999999999km", "1,99999999999km",
+        "99999999999yo", "#", "+#", "-#", "#a", "+#a", "-#a", "#a\n", "+#a\n",
+        "#a\r", "#a\u0085", "#a\u2028", "#a\u2029", "#a b", "#a#b", "#_a",
+        "#é", "##a", "+-#a", "a#b", "😀", "😀😀", "a", "é", "\u0661\u0662km",
+        "12km ", " 12km", "\n", "1\n", "top1\n"
+    };
+    /** The characters random arguments are made of. */
+    final private static String ALPHABET = "019,#+-_kmytopcgé 😀\n\u2028";
+    /** The number of random arguments. */
+    final private static int SAMPLES = 200000;
+    /** The regex <code>/iam</code> used to read a stat and its value. */
+    final private static Pattern STATARGUMENTPATTERN =
+        Pattern.compile("(\\d+)(\\w+)");
+    /** Stands for the value of a group which does not fit an int. */
+    final private static String OVERFLOW = "overflow";
+
+    /**
+     * Compares the parser with the regexes on the edge cases.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Test
+    public void edgeCases() {
+        final ArgumentParser parser = new ArgumentParser();
+        for (String argument : EDGECASES)
+            check(parser, argument);
+    }
+
+    /**
+     * Compares the parser with the regexes on every argument of up to three
+     * characters from {@link #ALPHABET}.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Test
+    public void shortArguments() {
+        final ArgumentParser parser = new ArgumentParser();
+        final List<String> arguments = new ArrayList<String>();
+        arguments.add("");
+        for (int length = 1; length <= 3; ++length) {
+            final int from = arguments.size();
+            for (int i = arguments.size() - 1; i >= 0
+                 && arguments.get(i).length() == length - 1; --i)
+                for (char c : ALPHABET.toCharArray())
+                    arguments.add(arguments.get(i) + c);
+            for (String argument : arguments.subList(from, arguments.size()))
+                check(parser, argument);
+        }
+    }
+
+    /**
+     * Compares the parser with the regexes on random arguments, mostly made
+     * of {@link #ALPHABET} and starting like one of the edge cases.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Test
+    public void randomArguments() {
+        final ArgumentParser parser = new ArgumentParser();
+        final Random random = new Random(23);
+        final StringBuilder argument = new StringBuilder();
+        for (int i = 0; i < SAMPLES; ++i) {
+            argument.setLength(0);
+            if (random.nextBoolean())
+                argument.append(EDGECASES[random.nextInt(EDGECASES.length)]);
+            for (int length = random.nextInt(10); length > 0; --length)
+                argument.append(random.nextInt(20) == 0
+                                ? (char)random.nextInt(0x3000)
+                                : ALPHABET.charAt(
+                                      random.nextInt(ALPHABET.length())));
+            check(parser, argument.toString());
+        }
+    }
+
+    /**
+     * Checks that the parser reads an argument of both commands as the
+     * regexes did.
+     *
+     * @param parser   The {@link ArgumentParser} under test.
+     * @param argument The argument in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static void check(ArgumentParser parser, String argument) {
+        final String quoted = "\"" + escape(argument) + "\"";
+        assertEquals(oldIam(argument), newIam(parser, argument),
+                     "/iam " + quoted);
+        assertEquals(oldWhois(argument), newWhois(parser, argument),
+                     "/whois " + quoted);
+    }
+
+    /**
+     * Describes an argument of <code>/iam</code> as the regexes read it.
+     *
+     * @param argument The argument in question.
+     * @return The kind of the argument, followed by its groups.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static String oldIam(String argument) {
+        Matcher matcher = Filter.TAGARGUMENTPATTERN.matcher(argument);
+        if (matcher.matches())
+            return ArgumentParser.Kind.TAG + " "
+                   + matcher.group(1).equals(Filter.EXCLUDETAGPREFIX) + " "
+                   + matcher.group(2);
+        matcher = STATARGUMENTPATTERN.matcher(argument);
+        if (matcher.matches())
+            return ArgumentParser.Kind.STAT + " " + parse(matcher.group(1))
+                   + " " + matcher.group(2) + " " + stat(matcher.group(2));
+        if (Profile.EMOJIPATTERN.matcher(argument).matches())
+            return ArgumentParser.Kind.EMOJI.toString();
+        return ArgumentParser.Kind.UNKNOWN.toString();
+    }
+
+    /**
+     * Describes an argument of <code>/iam</code> as the parser reads it.
+     *
+     * @param parser   The {@link ArgumentParser} under test.
+     * @param argument The argument in question.
+     * @return The kind of the argument, followed by its groups.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static String newIam(ArgumentParser parser, String argument) {
+        final ArgumentParser.Kind kind = parser.parseIam(argument);
+        switch (kind) {
+            case TAG:
+                return kind + " " + parser.isNegated() + " "
+                       + parser.getTag();
+            case STAT:
+                return kind + " " + value(parser::getValue) + " "
+                       + unit(parser, argument) + " " + parser.getStat();
+            default:
+                return kind.toString();
+        }
+    }
+
+    /**
+     * Describes an argument of <code>/whois</code> as the regexes read it.
+     *
+     * @param argument The argument in question.
+     * @return The kind of the argument, followed by its groups.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static String oldWhois(String argument) {
+        Matcher matcher = Filter.LIMITARGUMENTPATTERN.matcher(argument);
+        if (matcher.matches())
+            return ArgumentParser.Kind.LIMIT + " " + parse(matcher.group(1));
+        matcher = Filter.RANGEARGUMENTPATTERN.matcher(argument);
+        if (matcher.matches()) {
+            final String min = parse(matcher.group(1)),
+                         max = matcher.group(2).isEmpty()
+                               ? min : parse(matcher.group(3));
+            return ArgumentParser.Kind.RANGE + " " + min + " " + max + " "
+                   + matcher.group(4) + " " + stat(matcher.group(4));
+        }
+        matcher = Filter.TAGARGUMENTPATTERN.matcher(argument);
+        if (matcher.matches())
+            return ArgumentParser.Kind.TAG + " "
+                   + matcher.group(1).equals(Filter.EXCLUDETAGPREFIX) + " "
+                   + matcher.group(2);
+        return ArgumentParser.Kind.UNKNOWN.toString();
+    }
+
+    /**
+     * Describes an argument of <code>/whois</code> as the parser reads it.
+     *
+     * @param parser   The {@link ArgumentParser} under test.
+     * @param argument The argument in question.
+     * @return The kind of the argument, followed by its groups.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static String newWhois(ArgumentParser parser, String argument) {
+        final ArgumentParser.Kind kind = parser.parseWhois(argument);
+        switch (kind) {
+            case LIMIT:
+                return kind + " " + value(parser::getValue);
+            case RANGE:
+                return kind + " " + value(parser::getValue) + " "
+                       + value(parser::getMax) + " " + unit(parser, argument)
+                       + " " + parser.getStat();
+            case TAG:
+                return kind + " " + parser.isNegated() + " "
+                       + parser.getTag();
+            default:
+                return kind.toString();
+        }
+    }
+
+    /**
+     * Parses a group as the regex-based code did.
+     *
+     * @param group The group in question.
+     * @return The value of the group, <code>"null"</code> if it is empty or
+     * {@link #OVERFLOW} if it does not fit an int.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static String parse(String group) {
+        return value(() -> group.isEmpty() ? null : Integer.parseInt(group));
+    }
+
+    /**
+     * Gets a value, telling an overflow apart.
+     *
+     * @param getter Gets the value.
+     * @return The value, or {@link #OVERFLOW} if it does not fit an int.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static String value(Supplier<Integer> getter) {
+        try {
+            return String.valueOf(getter.get());
+        } catch (NumberFormatException e) {
+            return OVERFLOW;
+        }
+    }
+
+    /**
+     * Finds the unit the parser recognized, which is the only suffix of the
+     * argument it accepts.
+     *
+     * @param parser   The {@link ArgumentParser} in question.
+     * @param argument The argument just parsed.
+     * @return The unit, or <code>null</code> if no suffix is accepted.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static String unit(ArgumentParser parser, String argument) {
+        for (int i = 0; i <= argument.length(); ++i)
+            if (parser.hasUnit(argument.substring(i)))
+                return argument.substring(i);
+        return null;
+    }
+
+    /**
+     * Finds the {@link Stat} of a unit as the regex-based code did.
+     *
+     * @param uom The unit in question.
+     * @return The {@link Stat} in question, or <code>null</code>.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static Stat stat(String uom) {
+        for (Stat stat : Stat.values())
+            if (stat.uom().equals(uom))
+                return stat;
+        return null;
+    }
+
+    /**
+     * Escapes the characters of an argument which would not show in a
+     * message.
+     *
+     * @param argument The argument in question.
+     * @return The escaped argument.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static String escape(String argument) {
+        final StringBuilder res = new StringBuilder();
+        for (char c : argument.toCharArray())
+            if (c < ' ' || c > '~')
+                res.append(String.format("\\u%04x", (int)c));
+            else
+                res.append(c);
+        return res.toString();
+    }
+
+}
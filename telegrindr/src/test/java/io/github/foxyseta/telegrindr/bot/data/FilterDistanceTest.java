@@ -0,0 +1,223 @@
+package io.github.foxyseta.telegrindr.bot.data;
+
+import static java.lang.Math.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Location;
+
+/**
+ * Checks {@link Filter#distance} and {@link Filter#withinDistance} against
+ * the haversine formula that {@link Filter#test} used to apply to every
+ * point.
+ *
+ * @author FoxySeta
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class FilterDistanceTest {
+
+    /** The distance ranges under test, as <code>/whois</code> arguments. */
+    final private static String[] RANGES = {
+        "0,0km", "0,1km", "1,20km", ",500km", "100,km", "2000,9000km",
+        "15000,km", "19000,20100km", ",25000km"
+    };
+    /** Coordinates on the poles, the equator and the antimeridian. */
+    final private static double[][] FIXTURES = {
+        {0, 0}, {0, 180}, {0, -180}, {90, 0}, {-90, 0}, {90, 180},
+        {-90, -180}, {45, 179.9999}, {45, -179.9999}, {-45, 180},
+        {89.9999, 90}, {-89.9999, -90}, {0.0001, 0}, {0, 0.0001},
+        {44.4949, 11.3426}
+    };
+    /**
+     * The distance in kilometers from either end of a range within which the
+     * two formulas may round differently.
+     */
+    final private static double TOLERANCE = 1e-6;
+    /** The number of random points checked for each range and origin. */
+    final private static int SAMPLES = 5000;
+
+    /**
+     * Checks that {@link Filter#distance} still computes the old formula.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Test
+    public void distanceMatchesOldFormula() {
+        final Random random = new Random(8);
+        for (double[] from : FIXTURES) {
+            for (double[] to : FIXTURES)
+                assertEquals(oldDistance(from[0], from[1], to[0], to[1]),
+                             Filter.distance(from[0], from[1], to[0], to[1]),
+                             TOLERANCE);
+            for (int i = 0; i < SAMPLES; ++i) {
+                final double lat = randomLatitude(random),
+                             lon = randomLongitude(random);
+                assertEquals(oldDistance(from[0], from[1], lat, lon),
+                             Filter.distance(from[0], from[1], lat, lon),
+                             TOLERANCE);
+            }
+        }
+    }
+
+    /**
+     * Checks that {@link Filter#withinDistance} accepts exactly the points
+     * the old formula placed within range, from the fixtures to the fixtures
+     * and to random points.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Test
+    public void withinDistanceMatchesOldFormula() {
+        final Random random = new Random(8);
+        for (String range : RANGES)
+            for (double[] from : FIXTURES) {
+                final Filter filter = new Filter(new String[] {range},
+                                                 location(from[0], from[1]));
+                for (double[] to : FIXTURES)
+                    check(filter, range, from, to[0], to[1]);
+                for (int i = 0; i < SAMPLES; ++i)
+                    check(filter, range, from, randomLatitude(random),
+                          randomLongitude(random));
+                // just outside and inside the maximum, along a meridian
+                if (filter.maxDistance() < 20000)
+                    for (double delta : new double[] {-1e-3, 1e-3}) {
+                        final double lat = from[0] - toDegrees(
+                            (filter.maxDistance() + delta)
+                            / Filter.EARTHRADIUS);
+                        if (lat >= -90)
+                            check(filter, range, from, lat, from[1]);
+                    }
+            }
+    }
+
+    /**
+     * Checks that {@link Filter#withinDistance} rejects every point when the
+     * origin is unknown.
+     *
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    @Test
+    public void withinDistanceWithoutOrigin() {
+        final Filter filter = new Filter(new String[] {",25000km"}, null);
+        for (double[] to : FIXTURES)
+            assertFalse(filter.withinDistance(to[0], to[1]));
+    }
+
+    /**
+     * Compares {@link Filter#withinDistance} with the old range check for a
+     * single point, unless the point lies too close to either end of the
+     * range.
+     *
+     * @param filter The {@link Filter} in question.
+     * @param range  The argument <code>filter</code> was built from.
+     * @param from   The origin of <code>filter</code>.
+     * @param lat    The latitude of the point.
+     * @param lon    The longitude of the point.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static void check(Filter filter, String range, double[] from,
+                              double lat, double lon) {
+        final double d = oldDistance(from[0], from[1], lat, lon);
+        if (abs(d - filter.minDistance()) < TOLERANCE
+            || abs(d - filter.maxDistance()) < TOLERANCE)
+            return;
+        final boolean expected = d >= filter.minDistance()
+                                 && d <= filter.maxDistance();
+        assertEquals(expected, filter.withinDistance(lat, lon),
+                     range + " from (" + from[0] + ", " + from[1] + ") to ("
+                     + lat + ", " + lon + "), " + d + "km");
+    }
+
+    /**
+     * Calculates the distance between two points as {@link Filter#test} did
+     * before {@link Filter#withinDistance} was introduced.
+     *
+     * @param lat1 The latitude of the first point.
+     * @param lon1 The longitude of the first point.
+     * @param lat2 The latitude of the second point.
+     * @param lon2 The longitude of the second point.
+     * @return The distance between the two points in kilometers.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static double oldDistance(double lat1, double lon1, double lat2,
+                                      double lon2) {
+        final double deltaLat = toRadians(lat2 - lat1),
+                     deltaLon = toRadians(lon2 - lon1),
+                     a = sin(deltaLat / 2) * sin(deltaLat / 2)
+                       + cos(toRadians(lat1)) * cos(toRadians(lat2))
+                       * sin(deltaLon / 2) * sin(deltaLon / 2),
+                     c = 2 * atan2(sqrt(a), sqrt(1 - a));
+        return Filter.EARTHRADIUS * c;
+    }
+
+    /**
+     * Builds a {@link Location}.
+     *
+     * @param lat The latitude.
+     * @param lon The longitude.
+     * @return The {@link Location} in question.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static Location location(double lat, double lon) {
+        final Location res = new Location();
+        res.setLatitude(lat);
+        res.setLongitude(lon);
+        return res;
+    }
+
+    /**
+     * Draws a latitude, favouring the poles once in a while.
+     *
+     * @param random The source of randomness.
+     * @return A latitude between -90 and 90 degrees.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static double randomLatitude(Random random) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return 90 - random.nextDouble() * 1e-3;
+            case 1:
+                return -90 + random.nextDouble() * 1e-3;
+            default:
+                return random.nextDouble() * 180 - 90;
+        }
+    }
+
+    /**
+     * Draws a longitude, favouring the antimeridian once in a while.
+     *
+     * @param random The source of randomness.
+     * @return A longitude between -180 and 180 degrees.
+     * @author FoxySeta
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private static double randomLongitude(Random random) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return 180 - random.nextDouble() * 1e-3;
+            case 1:
+                return -180 + random.nextDouble() * 1e-3;
+            default:
+                return random.nextDouble() * 360 - 180;
+        }
+    }
+
+}